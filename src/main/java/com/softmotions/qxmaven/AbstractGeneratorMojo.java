@@ -1,12 +1,13 @@
 package com.softmotions.qxmaven;
 
-import org.apache.commons.exec.CommandLine;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * An abstract class that inherits from AbstractPythonMojo,
@@ -31,7 +32,7 @@ public abstract class AbstractGeneratorMojo extends AbstractPythonMojo {
      * @throws MojoExecutionException
      */
     @Override
-    public void execute() throws MojoExecutionException, MojoFailureException {
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
         getLog().info("Starting '" + getJobName() + "' job using external Python interpreter...");
         python();
     }
@@ -48,22 +49,70 @@ public abstract class AbstractGeneratorMojo extends AbstractPythonMojo {
     }
 
     @Override
-    protected CommandLine getPythonCommandLine() throws MojoExecutionException {
-        Map<String, Object> map = new HashMap<String, Object>();
+    protected List<String> getScriptArguments() throws MojoExecutionException {
+        return getJobArguments(jobName);
+    }
+
+    /**
+     * Generator script arguments for the specified job.
+     * When several build jobs are configured or the shared cache
+     * is used every job gets its own generator cache directory.
+     */
+    protected List<String> getJobArguments(String job) throws MojoExecutionException {
         File config = new File(this.getApplicationTarget(), this.config);
-        map.put("config", config);
-        map.put("job", jobName);
-        CommandLine cmdLine = new CommandLine(loadPythonInterpreter());
-        cmdLine.addArgument(resolvePythonScriptPath().getAbsolutePath());
-        cmdLine.addArgument("--no-progress-indicator");
-        cmdLine.addArgument("--config");
-        cmdLine.addArgument("${config}");
-        cmdLine.addArgument("${job}");
-        for (String o : this.getCommandLineOptions()) {
-            cmdLine.addArgument(o);
+        List<String> args = new ArrayList<>();
+        args.add(resolvePythonScriptPath().getAbsolutePath());
+        args.add("--no-progress-indicator");
+        args.add("--config");
+        args.add(config.getPath());
+        if (sharedCache || getBuildJobs().size() > 1) {
+            args.add("--macro");
+            args.add("CACHE:" + getJobCacheDirectory(job).getAbsolutePath());
+        }
+        args.add(job);
+        Collections.addAll(args, this.getCommandLineOptions());
+        return args;
+    }
+
+    /**
+     * Generator cache directory of the specified job
+     */
+    protected File getJobCacheDirectory(String job) {
+        return new File(getGeneratorCacheDirectory(), job);
+    }
+
+    /**
+     * Run the specified job using the Qooxdoo python generator.
+     * Safe to call concurrently for different jobs.
+     * The job cache directory is locked during the run if the shared cache is used.
+     *
+     * @return Generator output with the phase timings
+     */
+    protected GeneratorOutput generate(String job) throws MojoExecutionException {
+        getLog().info("Starting '" + job + "' job using external Python interpreter...");
+        String prefix = getBuildJobs().size() > 1 ? job : null;
+        if (!sharedCache) {
+            return python(getJobArguments(job), prefix);
+        }
+        File cacheDir = getJobCacheDirectory(job);
+        getLog().info("Using shared generator cache: " + cacheDir);
+        long starts = System.currentTimeMillis();
+        CacheLock lock;
+        try {
+            lock = CacheLock.acquire(cacheDir, getLog());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to lock the generator cache: " + cacheDir, e);
+        }
+        try {
+            metrics.count("cacheLockWait", System.currentTimeMillis() - starts);
+            return python(getJobArguments(job), prefix);
+        } finally {
+            try {
+                lock.close();
+            } catch (IOException e) {
+                getLog().warn("Failed to unlock the generator cache: " + cacheDir, e);
+            }
         }
-        cmdLine.setSubstitutionMap(map);
-        return cmdLine;
     }
 
     public String getJobName() {
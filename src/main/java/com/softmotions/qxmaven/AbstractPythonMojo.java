@@ -10,7 +10,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -21,6 +25,8 @@ import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.apache.commons.exec.CommandLine;
 import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.LogOutputStream;
+import org.apache.commons.exec.PumpStreamHandler;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -49,12 +55,61 @@ public abstract class AbstractPythonMojo extends AbstractQooxdooMojo {
                defaultValue = "python")
     private String pythonInterpreter;
 
+    /**
+     * Run scripts in a persistent python worker process
+     * reused by consecutive jobs of the build instead of
+     * starting a new interpreter for every job. The worker imports
+     * the script modules once and runs every job in a forked child,
+     * so the module state of a job never leaks into the next one.
+     * <p/>
+     * parameter property="qooxdoo.build.worker"
+     * default-value="false"
+     */
+    @Parameter(property = "qooxdoo.build.worker",
+               defaultValue = "false")
+    protected boolean pythonWorker;
+
+    /**
+     * Max number of script output lines buffered before they are sent to the build log.
+     * The output pump waits while the buffer is full, no line is ever dropped.
+     * <p/>
+     * parameter property="qooxdoo.build.outputBuffer"
+     * default-value="10000"
+     */
+    @Parameter(property = "qooxdoo.build.outputBuffer",
+               defaultValue = "10000")
+    protected int outputBuffer;
+
+    /**
+     * Interval in milliseconds of the script process resource sampling
+     * (memory, CPU time and I/O of the process tree, Linux only).
+     * Zero disables the sampling.
+     * <p/>
+     * parameter property="qooxdoo.build.sampleInterval"
+     * default-value="500"
+     */
+    @Parameter(property = "qooxdoo.build.sampleInterval",
+               defaultValue = "500")
+    protected long sampleInterval;
+
+    /**
+     * Max resident memory in megabytes the script process tree may use.
+     * The script process is killed and the build fails as soon as
+     * the sampled memory exceeds the budget. Zero means no limit.
+     * <p/>
+     * parameter property="qooxdoo.build.memoryBudget"
+     * default-value="0"
+     */
+    @Parameter(property = "qooxdoo.build.memoryBudget",
+               defaultValue = "0")
+    protected long memoryBudget;
+
     private String realInterpreter;
 
     /**
      * Run the script
      */
-    public void execute() throws MojoExecutionException, MojoFailureException {
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
         // Launch job
         getLog().info("Starting '" + getScriptName() + "' using external Python interpreter...");
         python();
@@ -66,19 +121,131 @@ public abstract class AbstractPythonMojo extends AbstractQooxdooMojo {
      * @throws MojoExecutionException
      */
     protected void python() throws MojoExecutionException {
-        CommandLine cmdLine = getPythonCommandLine();
+        python(getScriptArguments());
+    }
+
+    /**
+     * Launch a script with the external python interpreter
+     *
+     * @param args Script path followed by the script arguments
+     * @throws MojoExecutionException
+     */
+    protected void python(List<String> args) throws MojoExecutionException {
+        python(args, null);
+    }
+
+    /**
+     * Launch a script with the external python interpreter
+     *
+     * @param args   Script path followed by the script arguments
+     * @param prefix Prefix of the logged script output, may be null
+     * @return Closed script output with the phase timings
+     * @throws MojoExecutionException
+     */
+    protected GeneratorOutput python(List<String> args, String prefix) throws MojoExecutionException {
+        GeneratorOutput output = new GeneratorOutput(getLog(), prefix, outputBuffer);
+        final ProcessSampler[] sampler = new ProcessSampler[1];
+        if (pythonWorker) {
+            try {
+                pythonWorker(args, output, sampler);
+            } catch (MojoExecutionException e) {
+                checkMemoryBudget(sampler[0]);
+                throw e;
+            } finally {
+                output.close();
+                reportResources(sampler[0], prefix);
+            }
+            checkMemoryBudget(sampler[0]);
+            return output;
+        }
+        CommandLine cmdLine = getPythonCommandLine(args);
         getLog().debug("Command line: '" + cmdLine.toString() + "'");
         long starts = System.currentTimeMillis();
-        try {
-            DefaultExecutor executor = new DefaultExecutor();
+        try (LogOutputStream out = output.stream(false);
+             LogOutputStream err = output.stream(true)) {
+            DefaultExecutor executor = new DefaultExecutor() {
+                @Override
+                protected Process launch(CommandLine command, Map<String, String> env, File dir) throws IOException {
+                    Process process = super.launch(command, env, dir);
+                    sampler[0] = ProcessSampler.start(process, sampleInterval, memoryBudget << 20);
+                    return process;
+                }
+            };
             executor.setExitValue(0);
+            executor.setStreamHandler(new PumpStreamHandler(out, err));
             executor.execute(cmdLine);
         } catch (Exception e) {
+            checkMemoryBudget(sampler[0]);
             throw new MojoExecutionException(e.getMessage(), e);
+        } finally {
+            output.close();
+            reportResources(sampler[0], prefix);
         }
         long passedTimeInSeconds = TimeUnit.SECONDS.convert(System.currentTimeMillis() - starts, TimeUnit.MILLISECONDS);
         getLog().info("DONE in " + passedTimeInSeconds + " seconds");
+        checkMemoryBudget(sampler[0]);
+        return output;
+    }
+
+    /**
+     * Stop the sampler, log the resource usage and record it into the execution metrics.
+     */
+    private void reportResources(ProcessSampler sampler, String prefix) {
+        if (sampler == null) {
+            return;
+        }
+        sampler.stop();
+        getLog().info((prefix != null ? "[" + prefix + "] " : "") + "Resources: " + sampler);
+        metrics.addChildCpuTime(sampler.getCpuTime());
+        metrics.peak("childPeakRss", sampler.getPeakRss());
+        metrics.count("childReadBytes", sampler.getReadBytes());
+        metrics.count("childWriteBytes", sampler.getWriteBytes());
+    }
 
+    private void checkMemoryBudget(ProcessSampler sampler) throws MojoExecutionException {
+        if (sampler == null || memoryBudget <= 0) {
+            return;
+        }
+        long peak = sampler.getPeakRss() >> 20;
+        if (peak > memoryBudget || sampler.isBudgetExceeded()) {
+            throw new MojoExecutionException("Python process memory budget exceeded: peak RSS " + peak
+                                             + " MB, budget " + memoryBudget + " MB (qooxdoo.build.memoryBudget)");
+        }
+    }
+
+    /**
+     * Launch a script in the persistent python worker
+     *
+     * @param sampler Receives the resource sampler of the worker process
+     * @throws MojoExecutionException
+     */
+    protected void pythonWorker(List<String> args, GeneratorOutput output,
+                                ProcessSampler[] sampler) throws MojoExecutionException {
+        getLog().debug("Worker arguments: " + args);
+        long starts = System.currentTimeMillis();
+        int exitCode;
+        GeneratorWorker worker = null;
+        try {
+            worker = GeneratorWorker.acquire(loadPythonInterpreter(), new File(args.get(0)), getLog());
+            sampler[0] = ProcessSampler.start(worker.getProcess(), sampleInterval, memoryBudget << 20);
+            exitCode = worker.run(args, output);
+        } catch (IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        } finally {
+            if (worker != null) {
+                GeneratorWorker.release(worker);
+            }
+        }
+        if (exitCode != 0) {
+            throw new MojoExecutionException("Process exited with an error: " + exitCode);
+        }
+        long passed = System.currentTimeMillis() - starts;
+        if (worker.getJobs() > 1) {
+            getLog().info("DONE in " + passed + " ms by persistent worker (job #" + worker.getJobs()
+                          + ", cold start job took " + worker.getFirstJobTime() + " ms)");
+        } else {
+            getLog().info("DONE in " + passed + " ms by persistent worker (cold start)");
+        }
     }
 
     /**
@@ -109,16 +276,29 @@ public abstract class AbstractPythonMojo extends AbstractQooxdooMojo {
         return new String[0];
     }
 
+    /**
+     * Script path followed by the script arguments
+     */
+    protected List<String> getScriptArguments() throws MojoExecutionException {
+        List<String> args = new ArrayList<>();
+        args.add(resolvePythonScriptPath().getAbsolutePath());
+        Collections.addAll(args, this.getCommandLineOptions());
+        return args;
+    }
+
     /**
      * Return the command line to use with python
      *
      * @return The command line
      */
     protected CommandLine getPythonCommandLine() throws MojoExecutionException {
+        return getPythonCommandLine(getScriptArguments());
+    }
+
+    protected CommandLine getPythonCommandLine(List<String> args) {
         CommandLine cmdLine = new CommandLine(loadPythonInterpreter());
-        cmdLine.addArgument(resolvePythonScriptPath().getAbsolutePath());
-        for (String o : this.getCommandLineOptions()) {
-            cmdLine.addArgument(o);
+        for (String a : args) {
+            cmdLine.addArgument(a);
         }
         return cmdLine;
     }
@@ -1,8 +1,18 @@
 package com.softmotions.qxmaven;
 
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.repository.ArtifactRepository;
@@ -12,6 +22,8 @@ import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -19,6 +31,7 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.repository.RepositorySystem;
 import org.apache.maven.settings.Settings;
 import org.codehaus.plexus.archiver.manager.ArchiverManager;
+import org.eclipse.aether.SessionData;
 import org.eclipse.aether.impl.ArtifactResolver;
 
 /**
@@ -29,6 +42,17 @@ public abstract class AbstractQooxdooMojo extends AbstractMojo {
 
     final static protected String QOOXDOO_SDK_DIRECTORY = "qooxdoo-sdk";
 
+    /**
+     * Project context key of the qooxdoo library description
+     * published for the reactor projects depending on the library
+     */
+    final static protected String CONTEXT_LIBRARY = "qooxdoo.library";
+
+    /**
+     * Project context key of the source directories of the linked reactor libraries
+     */
+    final static protected String CONTEXT_LINKED_ROOTS = "qooxdoo.linkedRoots";
+
     /**
      * component
      */
@@ -119,6 +143,28 @@ public abstract class AbstractQooxdooMojo extends AbstractMojo {
                required = true)
     protected File cacheDirectory;
 
+    /**
+     * Use the generator cache shared by all projects and builds of the machine
+     * instead of the per-project {@code cacheDirectory}. The shared cache is kept
+     * per qooxdoo sdk version and build job, survives {@code mvn clean},
+     * generator runs using it are serialized by a file lock.
+     * <p/>
+     * parameter property="qooxdoo.build.sharedCache"
+     * default-value="false"
+     */
+    @Parameter(property = "qooxdoo.build.sharedCache",
+               defaultValue = "false")
+    protected boolean sharedCache;
+
+    /**
+     * Root of the shared generator cache, defaults to
+     * {@code .cache/qooxdoo/generator} in the local Maven repository.
+     * <p/>
+     * parameter property="qooxdoo.build.sharedCacheDirectory"
+     */
+    @Parameter(property = "qooxdoo.build.sharedCacheDirectory")
+    protected File sharedCacheDirectory;
+
     /**
      * Path to the directory containing translation files.
      * <p/>
@@ -226,6 +272,15 @@ public abstract class AbstractQooxdooMojo extends AbstractMojo {
                defaultValue = "build")
     protected String buildJob;
 
+    /**
+     * Names of the jobs used to build the application.
+     * When specified it overrides buildJob and the jobs are run concurrently.
+     * <p/>
+     * parameter property="qooxdoo.build.jobs"
+     */
+    @Parameter(property = "qooxdoo.build.jobs")
+    protected List<String> buildJobs;
+
     /**
      * Bin directory for embedded python interpreter
      */
@@ -255,10 +310,190 @@ public abstract class AbstractQooxdooMojo extends AbstractMojo {
     @Parameter(required = true, readonly = true, defaultValue = "${localRepository}")
     protected ArtifactRepository localRepository;
 
+    /**
+     * Skip the goal execution if its declared inputs are not changed
+     * and its outputs are intact since its last successful execution,
+     * see {@link #declareExecution(ExecutionState)}.
+     * <p/>
+     * parameter property="qooxdoo.incremental"
+     * default-value="true"
+     */
+    @Parameter(property = "qooxdoo.incremental",
+               defaultValue = "true")
+    protected boolean incremental;
+
+    /**
+     * State of the current execution, null if the goal is not incremental
+     */
+    protected ExecutionState executionState;
+
+    /**
+     * Metrics of the current execution
+     */
+    protected BuildMetrics.Execution metrics = new BuildMetrics.Execution(null, null);
 
     protected AbstractQooxdooMojo() {
     }
 
+    /**
+     * Execute the mojo and record its build metrics
+     */
+    public final void execute() throws MojoExecutionException, MojoFailureException {
+        String goal = (mojo != null) ? mojo.getGoal() : getClass().getSimpleName();
+        String executionId = (mojo != null) ? mojo.getExecutionId() : null;
+        BuildMetrics bm = getSessionObject(BuildMetrics.class);
+        // Without the version, so the metrics of the releases are comparable
+        String projectId = project.getGroupId() + ":" + project.getArtifactId();
+        metrics = bm.start(projectId, goal, executionId);
+        long cpu = getCpuTime();
+        String result = "failure";
+        try {
+            executionState = incremental ? createExecutionState(goal, executionId) : null;
+            if (executionState != null && isUpToDate(goal)) {
+                onSkipped();
+                result = "skipped";
+                return;
+            }
+            doExecute();
+            if (executionState != null) {
+                saveExecutionState();
+            }
+            result = "success";
+        } finally {
+            if (cpu > 0) {
+                cpu = TimeUnit.NANOSECONDS.toMillis(getCpuTime() - cpu);
+            }
+            metrics.finish(result, cpu);
+            try {
+                bm.write(projectId, getMetricsFile());
+            } catch (IOException e) {
+                getLog().warn("Failed to write build metrics", e);
+            }
+        }
+    }
+
+    /**
+     * CPU time of the JVM process in nanoseconds, so the work of the worker pools
+     * (generator jobs, archive extraction and writing, compression) is counted.
+     * In the parallel reactor builds it includes the concurrent executions as well,
+     * so it is recorded for information only and not compared by the metrics-compare goal.
+     * Falls back to the CPU time of the current thread if the process time is not available.
+     *
+     * @return CPU time or {@code 0} if not supported
+     */
+    private static long getCpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            long t = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+            if (t > 0) {
+                return t;
+            }
+        }
+        ThreadMXBean tmx = ManagementFactory.getThreadMXBean();
+        return tmx.isCurrentThreadCpuTimeSupported() ? tmx.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Mojo job
+     */
+    protected abstract void doExecute() throws MojoExecutionException, MojoFailureException;
+
+    /**
+     * Declare the inputs and outputs of the goal execution.
+     * Goals declaring nothing are always executed.
+     */
+    protected void declareExecution(ExecutionState state) throws MojoExecutionException {
+    }
+
+    /**
+     * Called instead of {@link #doExecute()} if the execution is up to date.
+     * Restores the effects of the execution on the build session
+     * (project context values, attached artifacts).
+     */
+    protected void onSkipped() throws MojoExecutionException {
+    }
+
+    /**
+     * Directory of the persisted execution states
+     */
+    protected File getStateDirectory() {
+        return new File(this.outputDirectory, ".state");
+    }
+
+    private ExecutionState createExecutionState(String goal, String executionId) throws MojoExecutionException {
+        String key = (executionId != null && !executionId.equals(goal)) ? goal + "-" + executionId : goal;
+        ExecutionState state = new ExecutionState(getStateDirectory(), key);
+        declareExecution(state);
+        return state.isDeclared() ? state : null;
+    }
+
+    private boolean isUpToDate(String goal) {
+        long starts = System.currentTimeMillis();
+        String reason;
+        try {
+            reason = executionState.check();
+        } catch (IOException e) {
+            getLog().warn("Failed to check the execution state", e);
+            reason = e.toString();
+        }
+        metrics.cache("execution", reason == null);
+        FileIndex index = executionState.getIndex();
+        getLog().info("Scanned " + index.getEntries().size() + " input files in " + index.getScanTime()
+                      + " ms, " + index.getHashedFiles() + " hashed");
+        if (reason == null) {
+            getLog().info("Skipping '" + goal + "': inputs and outputs are unchanged, checked in "
+                          + (System.currentTimeMillis() - starts) + " ms");
+            return true;
+        }
+        getLog().info("Executing '" + goal + "': " + reason);
+        try {
+            executionState.invalidate();
+        } catch (IOException e) {
+            getLog().warn(e);
+        }
+        return false;
+    }
+
+    private void saveExecutionState() {
+        try {
+            countWrite(executionState.save());
+        } catch (IOException e) {
+            getLog().warn("Failed to save the execution state", e);
+        }
+    }
+
+    /**
+     * Build metrics file of the project
+     */
+    protected File getMetricsFile() {
+        return new File(this.outputDirectory, "build-metrics.json");
+    }
+
+    /**
+     * Get the object of the specified type shared by
+     * all plugin executions of the build session.
+     * The object is created by the type default constructor.
+     */
+    protected <T> T getSessionObject(Class<T> type) {
+        try {
+            if (session == null || session.getRepositorySession() == null) {
+                return type.getDeclaredConstructor().newInstance();
+            }
+            SessionData data = session.getRepositorySession().getData();
+            Object v = data.get(type);
+            while (v == null) {
+                T nv = type.getDeclaredConstructor().newInstance();
+                if (data.set(type, null, nv)) {
+                    return nv;
+                }
+                v = data.get(type);
+            }
+            return type.cast(v);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Get the path to the sdk directory, containing the qooxdoo sdk
      *
@@ -303,6 +538,16 @@ public abstract class AbstractQooxdooMojo extends AbstractMojo {
         this.namespace = namespace;
     }
 
+    /**
+     * Jobs used to build the application
+     */
+    public List<String> getBuildJobs() {
+        if (buildJobs != null && !buildJobs.isEmpty()) {
+            return buildJobs;
+        }
+        return Collections.singletonList(buildJob);
+    }
+
     public String getSdkVersion() {
         Artifact qooxdooSdk = this.getQooxdooSdkArtifact();
         if (qooxdooSdk == null) {
@@ -312,7 +557,35 @@ public abstract class AbstractQooxdooMojo extends AbstractMojo {
     }
 
 
+    /**
+     * Resolve the dependency artifact. The resolved artifacts are
+     * shared by all plugin executions of the build session.
+     *
+     * @return Resolved artifact or null
+     */
     protected Artifact resolveJarArtifact(Dependency d) {
+        ArtifactCache cache = getSessionObject(ArtifactCache.class);
+        if (cache.contains(d)) {
+            Artifact a = cache.get(d);
+            metrics.count("artifactCacheHits", 1);
+            if (getLog().isDebugEnabled()) {
+                getLog().debug("Resolved artifact cache hit: " + ArtifactCache.getKey(d)
+                               + ", hits: " + cache.getHits() + ", resolutions: " + cache.getResolutions());
+            }
+            return a;
+        }
+        long starts = System.currentTimeMillis();
+        Artifact a = cache.put(d, doResolveJarArtifact(d));
+        metrics.count("artifactResolutions", 1);
+        if (getLog().isDebugEnabled()) {
+            getLog().debug("Resolved artifact: " + ArtifactCache.getKey(d) + " in "
+                           + (System.currentTimeMillis() - starts) + " ms"
+                           + ", hits: " + cache.getHits() + ", resolutions: " + cache.getResolutions());
+        }
+        return a;
+    }
+
+    private Artifact doResolveJarArtifact(Dependency d) {
         Artifact a = repoSystem.createDependencyArtifact(d);
         ArtifactResolutionRequest areq = new ArtifactResolutionRequest();
         areq.setArtifact(a);
@@ -361,56 +634,116 @@ public abstract class AbstractQooxdooMojo extends AbstractMojo {
     }
 
 
-    protected long getLastMtime(File file, long threshould) {
-        if (file == null || !file.exists()) {
-            return 0;
+    /**
+     * Directories tracked by the qooxdoo sources content index.
+     */
+    @SuppressWarnings("unchecked")
+    protected List<File> getQooxdooSourceRoots() {
+        List<File> roots = new ArrayList<>(Arrays.asList(this.sourcesDirectory,
+                                                         this.resourcesDirectory,
+                                                         this.testDirectory,
+                                                         this.translationDirectory,
+                                                         this.configuationDirectory));
+        // Sources of the reactor libraries linked by modules-unpack
+        List<File> linked = (List<File>) project.getContextValue(CONTEXT_LINKED_ROOTS);
+        if (linked != null) {
+            roots.addAll(linked);
         }
-        long lm = 0;
-        if (!file.isDirectory()) {
-            lm = file.lastModified();
-            if (lm > threshould) {
-                return lm;
+        return roots;
+    }
+
+    /**
+     * Files changed by the re-extraction of the qooxdoo source modules:
+     * the JAR manifest of every unpacked module and the library manifest
+     * of every module, including the linked reactor libraries.
+     */
+    protected List<File> getModuleMarkers() {
+        List<File> res = new ArrayList<>();
+        for (Dependency d : project.getDependencies()) {
+            if (!d.isOptional() &&
+                "sources".equals(d.getClassifier()) &&
+                "jar".equals(d.getType())) {
+                File moduleDir = new File(this.modulesCacheDirectory, d.getArtifactId());
+                res.add(new File(moduleDir, "META-INF/MANIFEST.MF"));
+                res.add(new File(moduleDir, this.manifest));
             }
         }
-        File[] files = file.listFiles();
-        if (files == null) {
-            return 0;
+        return res;
+    }
+
+    /**
+     * Generator cache directory: the shared cache directory of the sdk version
+     * if {@link #sharedCache} is on, the project {@link #cacheDirectory} otherwise.
+     */
+    protected File getGeneratorCacheDirectory() {
+        if (!sharedCache) {
+            return cacheDirectory;
         }
-        for (File f : files) {
-            lm = getLastMtime(f, threshould);
-            if (lm > 0) {
-                return lm;
-            }
+        File root = sharedCacheDirectory;
+        if (root == null) {
+            root = new File(localRepository.getBasedir(), ".cache/qooxdoo/generator");
         }
-        return 0;
+        String sdkVersion = getSdkVersion();
+        return new File(root, sdkVersion != null ? sdkVersion : "unknown");
     }
 
-    protected boolean isQooxdooSourcesChanged() {
-        if ("true".equals(project.getProperties().get("qooxdoo.application.dependency.updated"))) {
-            return true;
-        }
-        long ts = 0;
-        String ljob = null;
+    /**
+     * State of the siteroot synchronization, see {@link SiterootSync}
+     */
+    protected File getSiterootSyncStateFile() {
+        return new File(getApplicationTarget(), ".siteroot-sync");
+    }
+
+    /**
+     * Record of the last successful generation of the specified job
+     */
+    protected File getGenerationFile(String job) {
+        return new File(getApplicationTarget(), ".generation-" + job);
+    }
+
+    protected File getSourcesIndexFile(String job) {
+        return new File(getApplicationTarget(), ".generation-" + job + ".index");
+    }
+
+    /**
+     * Record the state of the last successful generation.
+     *
+     * @param job Generator job
+     * @param ts  Time the sources were captured at
+     */
+    protected void writeGeneration(String job, long ts) throws IOException {
         Properties genprops = new Properties();
-        File gfile = new File(getApplicationTarget(), ".generation");
-        if (gfile.exists()) {
-            try (FileReader fr = new FileReader(gfile)) {
-                genprops.load(fr);
-                ts = Long.valueOf(genprops.getProperty("ts"));
-                ljob = genprops.getProperty("job");
-            } catch (Exception e) {
-                getLog().warn(e);
+        genprops.setProperty("ts", String.valueOf(ts));
+        genprops.setProperty("job", job);
+        StringWriter sw = new StringWriter();
+        genprops.store(sw, null);
+        // Skip the date comment, the record is written only if its values changed
+        StringBuilder sb = new StringBuilder();
+        for (String line : sw.toString().split("\\r?\\n")) {
+            if (!line.startsWith("#")) {
+                sb.append(line).append('\n');
             }
-        } else {
-            return true;
-        }
-        if (buildJob.equals(ljob) &&
-            getLastMtime(this.sourcesDirectory, ts) == 0 &&
-            getLastMtime(this.resourcesDirectory, ts) == 0 &&
-            getLastMtime(this.testDirectory, ts) == 0 &&
-            getLastMtime(this.configuationDirectory, ts) == 0) {
-            return false;
         }
-        return true;
+        writeFile(getGenerationFile(job), sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Write the generated file only if its content changed, see {@link OutputFiles}.
+     * Written and unchanged files are counted in the execution metrics.
+     *
+     * @return True if the file was written
+     */
+    protected boolean writeFile(File file, byte[] data) throws IOException {
+        return countWrite(OutputFiles.writeIfChanged(file, data));
+    }
+
+    /**
+     * Count the write of a generated file in the execution metrics
+     *
+     * @param written False if the write was avoided because the file was not changed
+     */
+    protected boolean countWrite(boolean written) {
+        metrics.count(written ? "filesWritten" : "writesAvoided", 1);
+        return written;
     }
 }
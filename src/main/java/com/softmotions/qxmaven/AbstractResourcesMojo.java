@@ -7,13 +7,24 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.shared.filtering.MavenFilteringException;
 import org.apache.maven.shared.filtering.MavenResourcesExecution;
 import org.apache.maven.shared.filtering.MavenResourcesFiltering;
+import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.ReaderFactory;
 import org.codehaus.plexus.util.StringUtils;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * An abstract class that inherits from AbstractQooxdooMojo,
@@ -52,7 +63,43 @@ public abstract class AbstractResourcesMojo extends AbstractQooxdooMojo {
                hint = "default")
     protected MavenResourcesFiltering mavenResourcesFiltering;
 
-    public void execute() throws MojoExecutionException {
+    protected void doExecute() throws MojoExecutionException {
+        copyResourcesIfChanged(this.getResources(), this.getResourcesTarget());
+    }
+
+    /**
+     * Copy and filter the resources into the staging directory next to the target,
+     * then replace only the target files whose content changed.
+     */
+    protected void copyResourcesIfChanged(List<Resource> resources, File target) throws MojoExecutionException {
+        File staging = new File(target.getAbsoluteFile().getParentFile(), "." + target.getName() + ".staging");
+        try {
+            if (staging.exists()) {
+                FileUtils.deleteDirectory(staging);
+            }
+            copyResources(resources, staging);
+            if (!staging.isDirectory()) {
+                return;
+            }
+            final Path sroot = staging.toPath();
+            final Path troot = target.toPath();
+            Files.walkFileTree(sroot, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    countWrite(OutputFiles.moveIfChanged(file.toFile(), troot.resolve(sroot.relativize(file)).toFile()));
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            FileUtils.deleteDirectory(staging);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to copy resources into: " + target, e);
+        }
+    }
+
+    /**
+     * Copy and filter the resources into the target directory
+     */
+    protected void copyResources(List<Resource> resources, File target) throws MojoExecutionException {
         try {
             if (StringUtils.isEmpty(this.encoding)) {
                 getLog().warn(
@@ -63,7 +110,7 @@ public abstract class AbstractResourcesMojo extends AbstractQooxdooMojo {
 
             final MavenResourcesExecution mavenResourcesExecution =
                     new MavenResourcesExecution(
-                            this.getResources(), this.getResourcesTarget(), this.project,
+                            resources, target, this.project,
                             this.encoding, null, Collections.EMPTY_LIST,
                             this.session);
 
@@ -111,6 +158,32 @@ public abstract class AbstractResourcesMojo extends AbstractQooxdooMojo {
         return this.getApplicationTarget();
     }
 
+    /**
+     * Hash of the values available to the filtered resources
+     */
+    protected String getFilterHash() {
+        Map<Object, Object> props = new TreeMap<>();
+        for (Map.Entry<Object, Object> e : project.getProperties().entrySet()) {
+            if (!"qooxdoo.application.dependency.updated".equals(e.getKey())) {
+                props.put(String.valueOf(e.getKey()), String.valueOf(e.getValue()));
+            }
+        }
+        if (session != null) {
+            for (Map.Entry<Object, Object> e : session.getUserProperties().entrySet()) {
+                props.put("user:" + e.getKey(), String.valueOf(e.getValue()));
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(project.getId()).append('\n')
+          .append(project.getBasedir()).append('\n')
+          .append(this.encoding).append('\n')
+          .append(this.escapeString).append('\n')
+          .append(this.escapeWindowsPaths).append('\n')
+          .append(props);
+        MessageDigest md = FileIndex.createDigest();
+        return FileIndex.toHex(md.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
     /**
      * Make sure the required project properties for filtering are defined.
      */
@@ -121,7 +194,7 @@ public abstract class AbstractResourcesMojo extends AbstractQooxdooMojo {
         project.getProperties().put("qooxdoo.application.sourcesDirectory", sourcesDirectory.getAbsolutePath());
         project.getProperties().put("qooxdoo.application.testDirectory", testDirectory.getAbsolutePath());
         project.getProperties().put("qooxdoo.application.outputDirectory", outputDirectory.getAbsolutePath());
-        project.getProperties().put("qooxdoo.application.cacheDirectory", cacheDirectory.getAbsolutePath());
+        project.getProperties().put("qooxdoo.application.cacheDirectory", getGeneratorCacheDirectory().getAbsolutePath());
         project.getProperties().put("qooxdoo.application.translationDirectory", translationDirectory.getAbsolutePath());
         if (getSdkVersion() != null) {
             project.getProperties().put("qooxdoo.sdk.version", getSdkVersion());
@@ -0,0 +1,620 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.DirectoryScanner;
+
+/**
+ * Analyze the compiled application scripts: attribute their raw
+ * and gzipped sizes to the qooxdoo classes, libraries and parts
+ * and check the size budgets.
+ * <p/>
+ * The parts are taken from the loader of the application ({@code qx.$$loader}),
+ * the libraries are the namespaces of the application and module manifests.
+ * The report is written into {@code bundle-report.json} and {@code bundle-report.html}
+ * of the output directory.
+ * <p/>
+ * goal analyze-bundle
+ * phase process-classes
+ */
+@Mojo(name = "analyze-bundle",
+      defaultPhase = LifecyclePhase.PROCESS_CLASSES)
+public class AnalyzeBundleMojo extends AbstractQooxdooMojo {
+
+    private static final Pattern LOADER_MAP = Pattern.compile("\\b(parts|packages)\\s*:\\s*\\{");
+
+    /**
+     * Max size of the loader script head containing the loader settings
+     */
+    private static final int LOADER_HEAD = 1024 * 1024;
+
+    private static final int MAX_REPORTED_CLASSES = 200;
+
+    /**
+     * Directory of the compiled scripts.
+     * Defaults to the {@code siteroot/script} directory of the application target.
+     * <p/>
+     * parameter property="qooxdoo.bundle.directory"
+     */
+    @Parameter(property = "qooxdoo.bundle.directory")
+    protected File bundleDirectory;
+
+    /**
+     * Size budgets of the application parts,
+     * part name to the max size: bytes or the number with the {@code k} or {@code m} suffix.
+     * <p/>
+     * parameter
+     */
+    @Parameter
+    protected Map<String, String> partBudgets;
+
+    /**
+     * Size budget of all the application scripts:
+     * bytes or the number with the {@code k} or {@code m} suffix.
+     * <p/>
+     * parameter property="qooxdoo.bundle.totalBudget"
+     */
+    @Parameter(property = "qooxdoo.bundle.totalBudget")
+    protected String totalBudget;
+
+    /**
+     * Size checked against the budgets: {@code gzip} or {@code raw}
+     * <p/>
+     * parameter property="qooxdoo.bundle.budgetSize"
+     * default-value="gzip"
+     */
+    @Parameter(property = "qooxdoo.bundle.budgetSize",
+               defaultValue = "gzip")
+    protected String budgetSize;
+
+    /**
+     * Fail the build if a budget is exceeded.
+     * <p/>
+     * parameter property="qooxdoo.bundle.failOnBudget"
+     * default-value="true"
+     */
+    @Parameter(property = "qooxdoo.bundle.failOnBudget",
+               defaultValue = "true")
+    protected boolean failOnBudget;
+
+    /**
+     * Deflate level used to compute the gzipped sizes.
+     * <p/>
+     * parameter property="qooxdoo.bundle.compressionLevel"
+     * default-value="6"
+     */
+    @Parameter(property = "qooxdoo.bundle.compressionLevel",
+               defaultValue = "6")
+    protected int compressionLevel;
+
+    /**
+     * Raw and gzipped sizes of the report item
+     */
+    static final class Sizes {
+
+        long raw;
+
+        long gzip;
+
+        int classes;
+
+        void add(long raw, long gzip) {
+            this.raw += raw;
+            this.gzip += gzip;
+        }
+
+        ObjectNode toJson(ObjectNode node) {
+            node.put("raw", raw);
+            node.put("gzip", gzip);
+            return node;
+        }
+    }
+
+    protected File getBundleDirectory() {
+        if (bundleDirectory != null) {
+            return bundleDirectory;
+        }
+        return new File(new File(this.getApplicationTarget(), "siteroot"), "script");
+    }
+
+    protected File getReportFile(String ext) {
+        return new File(this.outputDirectory, "bundle-report." + ext);
+    }
+
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
+        File dir = getBundleDirectory();
+        if (!dir.isDirectory()) {
+            getLog().warn("Missing compiled scripts directory: " + dir.getPath() + " nothing to analyze");
+            return;
+        }
+        DirectoryScanner ds = new DirectoryScanner();
+        ds.setBasedir(dir);
+        ds.setIncludes(new String[]{"**/*.js"});
+        ds.addDefaultExcludes();
+        ds.scan();
+        Set<String> scripts = new TreeSet<>();
+        for (String rel : ds.getIncludedFiles()) {
+            scripts.add(rel.replace(File.separatorChar, '/'));
+        }
+        if (scripts.isEmpty()) {
+            getLog().warn("No compiled scripts found in: " + dir.getPath());
+            return;
+        }
+        Map<String, String> namespaces = loadNamespaces();
+
+        Map<String, Sizes> files = new TreeMap<>();
+        Map<String, Sizes> libraries = new TreeMap<>();
+        List<Object[]> classes = new ArrayList<>();
+        Sizes total = new Sizes();
+        Map<String, List<String>> parts = null;
+        Map<String, List<String>> packages = null;
+        BundleAnalyzer analyzer = new BundleAnalyzer(compressionLevel);
+        try {
+            for (String rel : scripts) {
+                File f = new File(dir, rel);
+                BundleAnalyzer.Result res = analyzer.analyze(f);
+                metrics.addBytesRead(res.raw);
+                Sizes fs = new Sizes();
+                fs.add(res.raw, res.gzip);
+                fs.classes = res.classes.size() - (res.classes.containsKey(BundleAnalyzer.OTHER) ? 1 : 0);
+                files.put(rel, fs);
+                total.add(res.raw, res.gzip);
+                for (Map.Entry<String, long[]> e : res.classes.entrySet()) {
+                    String lib = getLibrary(e.getKey(), namespaces);
+                    Sizes ls = libraries.get(lib);
+                    if (ls == null) {
+                        ls = new Sizes();
+                        libraries.put(lib, ls);
+                    }
+                    ls.add(e.getValue()[0], e.getValue()[1]);
+                    if (!BundleAnalyzer.OTHER.equals(e.getKey())) {
+                        ls.classes++;
+                        total.classes++;
+                    }
+                    classes.add(new Object[]{e.getKey(), lib, rel, e.getValue()[0], e.getValue()[1]});
+                }
+                if (parts == null) {
+                    Map<String, JsonNode> loader = readLoader(f);
+                    if (loader.containsKey("parts") && loader.containsKey("packages")) {
+                        parts = toLists(loader.get("parts"));
+                        packages = new LinkedHashMap<>();
+                        for (Map.Entry<String, List<String>> e : toLists(loader.get("packages")).entrySet()) {
+                            List<String> uris = new ArrayList<>();
+                            for (String uri : e.getValue()) {
+                                String p = resolveScript(uri.substring(uri.indexOf(':') + 1), rel, scripts);
+                                if (p != null) {
+                                    uris.add(p);
+                                }
+                            }
+                            packages.put(e.getKey(), uris);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to analyze qooxdoo scripts", e);
+        } finally {
+            analyzer.close();
+        }
+        metrics.addFilesTouched(scripts.size());
+
+        Map<String, Sizes> partSizes = new LinkedHashMap<>();
+        if (parts == null) {
+            getLog().warn("The application loader is not found in: " + dir.getPath() + " parts are not analyzed");
+        } else {
+            for (Map.Entry<String, List<String>> e : parts.entrySet()) {
+                Set<String> pfiles = new LinkedHashSet<>();
+                for (String pkg : e.getValue()) {
+                    List<String> uris = packages.get(pkg);
+                    if (uris != null) {
+                        pfiles.addAll(uris);
+                    }
+                }
+                Sizes ps = new Sizes();
+                for (String pf : pfiles) {
+                    Sizes fs = files.get(pf);
+                    ps.add(fs.raw, fs.gzip);
+                    ps.classes += fs.classes;
+                }
+                partSizes.put(e.getKey(), ps);
+            }
+        }
+        Collections.sort(classes, new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] o1, Object[] o2) {
+                return Long.compare((Long) o2[3], (Long) o1[3]);
+            }
+        });
+
+        List<String> violations = new ArrayList<>();
+        ObjectMapper mapper = new ObjectMapper();
+        ArrayNode budgets = mapper.createArrayNode();
+        boolean gzipped = !"raw".equalsIgnoreCase(budgetSize);
+        if (totalBudget != null && !totalBudget.trim().isEmpty()) {
+            checkBudget("total", totalBudget, gzipped ? total.gzip : total.raw, budgets, violations);
+        }
+        if (partBudgets != null) {
+            for (Map.Entry<String, String> e : new TreeMap<>(partBudgets).entrySet()) {
+                Sizes ps = partSizes.get(e.getKey());
+                if (ps == null) {
+                    getLog().warn("Budget of the unknown part: '" + e.getKey() + "' known parts: " + partSizes.keySet());
+                    continue;
+                }
+                checkBudget("part:" + e.getKey(), e.getValue(), gzipped ? ps.gzip : ps.raw, budgets, violations);
+            }
+        }
+
+        ObjectNode report = mapper.createObjectNode();
+        report.put("project", project.getId());
+        report.put("directory", dir.getAbsolutePath());
+        report.put("compressionLevel", compressionLevel);
+        total.toJson(report.putObject("total")).put("files", files.size()).put("classes", total.classes);
+        ObjectNode pn = report.putObject("parts");
+        for (Map.Entry<String, Sizes> e : partSizes.entrySet()) {
+            ObjectNode n = e.getValue().toJson(pn.putObject(e.getKey()));
+            ArrayNode pkgs = n.putArray("packages");
+            for (String pkg : parts.get(e.getKey())) {
+                pkgs.add(pkg);
+            }
+        }
+        ObjectNode fn = report.putObject("files");
+        for (Map.Entry<String, Sizes> e : files.entrySet()) {
+            e.getValue().toJson(fn.putObject(e.getKey())).put("classes", e.getValue().classes);
+        }
+        ObjectNode ln = report.putObject("libraries");
+        for (Map.Entry<String, Sizes> e : libraries.entrySet()) {
+            e.getValue().toJson(ln.putObject(e.getKey())).put("classes", e.getValue().classes);
+        }
+        ArrayNode cn = report.putArray("classes");
+        for (Object[] c : classes) {
+            cn.addObject()
+              .put("name", (String) c[0])
+              .put("library", (String) c[1])
+              .put("file", (String) c[2])
+              .put("raw", (Long) c[3])
+              .put("gzip", (Long) c[4]);
+        }
+        report.set("budgets", budgets);
+        try {
+            writeFile(getReportFile("json"), mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(report));
+            StringWriter html = new StringWriter();
+            writeHtml(html, total, partSizes, files, libraries, classes, budgets);
+            writeFile(getReportFile("html"), html.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write the bundle report", e);
+        }
+
+        getLog().info(String.format("Compiled scripts: %d file(s), %d classes, %s raw, %s gzip",
+                                    files.size(), total.classes, formatSize(total.raw), formatSize(total.gzip)));
+        for (Map.Entry<String, Sizes> e : partSizes.entrySet()) {
+            getLog().info(String.format("  part %-30s %12s raw %12s gzip",
+                                        e.getKey(), formatSize(e.getValue().raw), formatSize(e.getValue().gzip)));
+        }
+        for (Map.Entry<String, Sizes> e : libraries.entrySet()) {
+            getLog().info(String.format("  library %-27s %12s raw %12s gzip",
+                                        e.getKey(), formatSize(e.getValue().raw), formatSize(e.getValue().gzip)));
+        }
+        getLog().info("Bundle report: " + getReportFile("html").getPath());
+        metrics.count("bundleRaw", total.raw);
+        metrics.count("bundleGzip", total.gzip);
+
+        if (violations.isEmpty()) {
+            return;
+        }
+        for (String v : violations) {
+            getLog().error(v);
+        }
+        String msg = violations.size() + " bundle size budget(s) exceeded";
+        if (failOnBudget) {
+            throw new MojoFailureException(msg);
+        }
+        getLog().warn(msg);
+    }
+
+    private void checkBudget(String name, String limit, long actual,
+                             ArrayNode budgets, List<String> violations) throws MojoExecutionException {
+        long max = parseSize(limit);
+        boolean exceeded = actual > max;
+        budgets.addObject()
+               .put("name", name)
+               .put("size", budgetSize)
+               .put("limit", max)
+               .put("actual", actual)
+               .put("exceeded", exceeded);
+        if (exceeded) {
+            violations.add("Budget of " + name + " exceeded: " + formatSize(actual)
+                           + " > " + formatSize(max) + " (" + budgetSize + ")");
+        }
+    }
+
+    static long parseSize(String v) throws MojoExecutionException {
+        String s = v.trim().toLowerCase();
+        if (s.endsWith("b")) {
+            s = s.substring(0, s.length() - 1);
+        }
+        long mul = 1;
+        if (s.endsWith("k")) {
+            mul = 1024;
+        } else if (s.endsWith("m")) {
+            mul = 1024 * 1024;
+        }
+        if (mul > 1) {
+            s = s.substring(0, s.length() - 1).trim();
+        }
+        try {
+            return (long) (Double.parseDouble(s) * mul);
+        } catch (NumberFormatException e) {
+            throw new MojoExecutionException("Invalid size budget: '" + v + "'");
+        }
+    }
+
+    static String formatSize(long size) {
+        if (size < 1024) {
+            return size + " B";
+        }
+        if (size < 1024 * 1024) {
+            return String.format("%.1f KB", size / 1024.0);
+        }
+        return String.format("%.2f MB", size / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Library namespaces: namespace to the library name
+     */
+    private Map<String, String> loadNamespaces() {
+        Map<String, String> res = new TreeMap<>();
+        res.put(this.namespace, this.namespace);
+        res.put("qx", "qx");
+        List<File> manifests = new ArrayList<>();
+        manifests.add(getManifestJson());
+        File[] modules = modulesCacheDirectory.listFiles();
+        if (modules != null) {
+            for (File m : modules) {
+                manifests.add(new File(m, "Manifest.json"));
+            }
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        for (File mf : manifests) {
+            if (!mf.isFile()) {
+                continue;
+            }
+            try {
+                String ns = mapper.readTree(mf).path("provides").path("namespace").asText(null);
+                if (ns != null && !ns.isEmpty() && !ns.startsWith("${")) {
+                    res.put(ns, ns);
+                }
+            } catch (IOException e) {
+                getLog().debug("Failed to read library manifest: " + mf, e);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Library of the class: the longest known namespace of the class name,
+     * the first name segment for the classes of the unknown libraries.
+     */
+    private static String getLibrary(String cls, Map<String, String> namespaces) {
+        if (BundleAnalyzer.OTHER.equals(cls)) {
+            return BundleAnalyzer.OTHER;
+        }
+        String lib = null;
+        for (String ns : namespaces.keySet()) {
+            if ((cls.equals(ns) || cls.startsWith(ns + ".")) && (lib == null || ns.length() > lib.length())) {
+                lib = ns;
+            }
+        }
+        if (lib != null) {
+            return namespaces.get(lib);
+        }
+        int idx = cls.indexOf('.');
+        return (idx != -1) ? cls.substring(0, idx) : cls;
+    }
+
+    /**
+     * Read the {@code parts} and {@code packages} settings of the application loader
+     * from the head of the script.
+     *
+     * @return Empty map if the script is not the loader
+     */
+    private Map<String, JsonNode> readLoader(File f) throws IOException {
+        Map<String, JsonNode> res = new LinkedHashMap<>();
+        byte[] head = new byte[(int) Math.min(f.length(), LOADER_HEAD)];
+        try (InputStream is = Files.newInputStream(f.toPath())) {
+            int off = 0;
+            int n;
+            while (off < head.length && (n = is.read(head, off, head.length - off)) != -1) {
+                off += n;
+            }
+        }
+        String data = new String(head, StandardCharsets.ISO_8859_1);
+        int idx = data.indexOf("qx.$$loader");
+        if (idx == -1) {
+            return res;
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true);
+        mapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+        Matcher m = LOADER_MAP.matcher(data);
+        m.region(idx, data.length());
+        while (m.find() && res.size() < 2) {
+            if (res.containsKey(m.group(1))) {
+                continue;
+            }
+            int end = findObjectEnd(data, m.end() - 1);
+            if (end == -1) {
+                break;
+            }
+            try {
+                res.put(m.group(1), mapper.readTree(data.substring(m.end() - 1, end)));
+            } catch (IOException e) {
+                getLog().debug("Failed to parse loader settings: " + m.group(1), e);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Position after the closing brace of the object literal started at the given position
+     */
+    private static int findObjectEnd(String data, int start) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = start; i < data.length(); ++i) {
+            char c = data.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    ++i;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '{' || c == '[') {
+                ++depth;
+            } else if ((c == '}' || c == ']') && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Convert the loader settings to the lists of strings:
+     * part name to the package ids, package id to the script uris
+     */
+    private static Map<String, List<String>> toLists(JsonNode node) {
+        Map<String, List<String>> res = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> it = node.fields();
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> e = it.next();
+            JsonNode v = e.getValue().isObject() ? e.getValue().path("uris") : e.getValue();
+            List<String> items = new ArrayList<>();
+            for (JsonNode item : v) {
+                items.add(item.asText());
+            }
+            res.put(e.getKey(), items);
+        }
+        return res;
+    }
+
+    /**
+     * Find the analyzed script referenced by the loader uri
+     */
+    private static String resolveScript(String uri, String loader, Set<String> scripts) {
+        int q = uri.indexOf('?');
+        if (q != -1) {
+            uri = uri.substring(0, q);
+        }
+        String dir = loader.substring(0, loader.lastIndexOf('/') + 1);
+        String name = uri.substring(uri.lastIndexOf('/') + 1);
+        if (scripts.contains(dir + uri)) {
+            return dir + uri;
+        }
+        if (scripts.contains(uri)) {
+            return uri;
+        }
+        for (String s : scripts) {
+            if (s.equals(name) || s.endsWith("/" + name)) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    private void writeHtml(Writer w, Sizes total, Map<String, Sizes> parts, Map<String, Sizes> files,
+                           Map<String, Sizes> libraries, List<Object[]> classes, ArrayNode budgets) throws IOException {
+        w.write("<!DOCTYPE html>\n<html><head><meta charset=\"UTF-8\"><title>Bundle report: ");
+        w.write(escape(project.getId()));
+        w.write("</title>\n<style>body{font-family:sans-serif;font-size:13px}"
+                + "table{border-collapse:collapse;margin-bottom:24px}"
+                + "td,th{padding:2px 8px;text-align:left}td.n{text-align:right}"
+                + "tr:nth-child(even){background:#f4f4f4}.bar{background:#4a90d9;height:10px}"
+                + ".fail{color:#c00;font-weight:bold}</style></head><body>\n");
+        w.write("<h1>" + escape(project.getId()) + "</h1>\n<p>" + files.size() + " file(s), "
+                + total.classes + " classes, " + formatSize(total.raw) + " raw, "
+                + formatSize(total.gzip) + " gzip</p>\n");
+        if (budgets.size() > 0) {
+            w.write("<h2>Budgets</h2>\n<table><tr><th>Budget</th><th>Limit</th><th>Actual</th><th></th></tr>\n");
+            for (JsonNode b : budgets) {
+                boolean exceeded = b.path("exceeded").asBoolean();
+                w.write("<tr><td>" + escape(b.path("name").asText()) + " (" + escape(b.path("size").asText()) + ")"
+                        + "</td><td class=\"n\">" + formatSize(b.path("limit").asLong())
+                        + "</td><td class=\"n\">" + formatSize(b.path("actual").asLong())
+                        + "</td><td" + (exceeded ? " class=\"fail\">exceeded" : ">ok") + "</td></tr>\n");
+            }
+            w.write("</table>\n");
+        }
+        writeTable(w, "Parts", parts, total);
+        writeTable(w, "Libraries", libraries, total);
+        writeTable(w, "Files", files, total);
+        w.write("<h2>Classes</h2>\n<table><tr><th>Class</th><th>Library</th><th>File</th>"
+                + "<th>Raw</th><th>Gzip</th><th></th></tr>\n");
+        int cnt = 0;
+        for (Object[] c : classes) {
+            if (++cnt > MAX_REPORTED_CLASSES) {
+                w.write("<tr><td colspan=\"6\">" + (classes.size() - MAX_REPORTED_CLASSES)
+                        + " more classes in the JSON report</td></tr>\n");
+                break;
+            }
+            w.write("<tr><td>" + escape((String) c[0]) + "</td><td>" + escape((String) c[1])
+                    + "</td><td>" + escape((String) c[2]) + "</td>");
+            writeSizes(w, (Long) c[3], (Long) c[4], total);
+            w.write("</tr>\n");
+        }
+        w.write("</table>\n</body></html>\n");
+    }
+
+    private static void writeTable(Writer w, String title, Map<String, Sizes> items, Sizes total) throws IOException {
+        if (items.isEmpty()) {
+            return;
+        }
+        w.write("<h2>" + title + "</h2>\n<table><tr><th>Name</th><th>Classes</th>"
+                + "<th>Raw</th><th>Gzip</th><th></th></tr>\n");
+        for (Map.Entry<String, Sizes> e : items.entrySet()) {
+            w.write("<tr><td>" + escape(e.getKey()) + "</td><td class=\"n\">" + e.getValue().classes + "</td>");
+            writeSizes(w, e.getValue().raw, e.getValue().gzip, total);
+            w.write("</tr>\n");
+        }
+        w.write("</table>\n");
+    }
+
+    private static void writeSizes(Writer w, long raw, long gzip, Sizes total) throws IOException {
+        int width = (total.raw > 0) ? (int) Math.max(1, raw * 300 / total.raw) : 0;
+        w.write("<td class=\"n\">" + formatSize(raw) + "</td><td class=\"n\">" + formatSize(gzip)
+                + "</td><td><div class=\"bar\" style=\"width:" + width + "px\"></div></td>");
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,75 @@
+package com.softmotions.qxmaven;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Dependency;
+
+/**
+ * Resolved dependency artifacts shared by all plugin executions of the build session.
+ * Unresolvable dependencies are remembered as well.
+ */
+public class ArtifactCache {
+
+    private static final Object NULL = new Object();
+
+    private final ConcurrentMap<String, Object> artifacts = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong resolutions = new AtomicLong();
+
+    /**
+     * Cache key of the dependency: full coordinates with the type, classifier and scope
+     */
+    public static String getKey(Dependency d) {
+        return d.getGroupId() + ':' + d.getArtifactId() + ':' + d.getType() + ':'
+               + (d.getClassifier() != null ? d.getClassifier() : "") + ':'
+               + d.getVersion() + ':' + d.getScope();
+    }
+
+    /**
+     * True if the dependency was resolved in this session
+     */
+    public boolean contains(Dependency d) {
+        return artifacts.containsKey(getKey(d));
+    }
+
+    /**
+     * Get the resolved artifact.
+     *
+     * @return Artifact or null if not resolved yet or not resolvable
+     */
+    public Artifact get(Dependency d) {
+        Object v = artifacts.get(getKey(d));
+        if (v != null) {
+            hits.incrementAndGet();
+        }
+        return (v == NULL) ? null : (Artifact) v;
+    }
+
+    /**
+     * Remember the resolved artifact.
+     *
+     * @param a Resolved artifact, null if the dependency is not resolvable
+     * @return Artifact kept in the cache
+     */
+    public Artifact put(Dependency d, Artifact a) {
+        resolutions.incrementAndGet();
+        Object v = artifacts.putIfAbsent(getKey(d), a != null ? a : NULL);
+        if (v == null) {
+            return a;
+        }
+        return (v == NULL) ? null : (Artifact) v;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getResolutions() {
+        return resolutions.get();
+    }
+}
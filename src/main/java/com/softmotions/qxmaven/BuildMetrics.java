@@ -0,0 +1,180 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Build metrics of the qooxdoo mojo executions of a build session.
+ * <p/>
+ * A single instance is shared by all executions of the session,
+ * see {@link AbstractQooxdooMojo#getSessionObject(Class)}.
+ */
+public class BuildMetrics {
+
+    public static final String HIT = "hit";
+
+    public static final String MISS = "miss";
+
+    private final Map<String, List<Execution>> executions = new LinkedHashMap<>();
+
+    /**
+     * Metrics of a single mojo execution.
+     * Counters are thread safe and may be updated from worker threads.
+     */
+    public static class Execution {
+
+        final String goal;
+
+        final String executionId;
+
+        final long started = System.currentTimeMillis();
+
+        long wallTime;
+
+        long cpuTime;
+
+        String result;
+
+        final AtomicLong bytesRead = new AtomicLong();
+
+        final AtomicLong bytesWritten = new AtomicLong();
+
+        final AtomicLong filesTouched = new AtomicLong();
+
+        final AtomicLong childCpuTime = new AtomicLong();
+
+        final Map<String, String> cache = new ConcurrentHashMap<>();
+
+        final Map<String, Long> counters = new ConcurrentHashMap<>();
+
+        Execution(String goal, String executionId) {
+            this.goal = goal;
+            this.executionId = executionId;
+        }
+
+        public void addBytesRead(long bytes) {
+            bytesRead.addAndGet(bytes);
+        }
+
+        public void addBytesWritten(long bytes) {
+            bytesWritten.addAndGet(bytes);
+        }
+
+        public void addFilesTouched(long files) {
+            filesTouched.addAndGet(files);
+        }
+
+        /**
+         * CPU time consumed by child processes, in milliseconds
+         */
+        public void addChildCpuTime(long ms) {
+            childCpuTime.addAndGet(ms);
+        }
+
+        /**
+         * Record the outcome of an up-to-date check.
+         *
+         * @param name Name of the checked item
+         * @param hit  True if the item was up to date
+         */
+        public void cache(String name, boolean hit) {
+            cache.put(name, hit ? HIT : MISS);
+        }
+
+        /**
+         * Add to an execution specific counter
+         */
+        public void count(String name, long value) {
+            synchronized (counters) {
+                Long v = counters.get(name);
+                counters.put(name, (v != null ? v : 0L) + value);
+            }
+        }
+
+        /**
+         * Keep the maximum of an execution specific counter
+         */
+        public void peak(String name, long value) {
+            synchronized (counters) {
+                Long v = counters.get(name);
+                if (v == null || v < value) {
+                    counters.put(name, value);
+                }
+            }
+        }
+
+        void finish(String result, long cpuTime) {
+            this.wallTime = System.currentTimeMillis() - started;
+            this.cpuTime = cpuTime;
+            this.result = result;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("goal", goal);
+            m.put("executionId", executionId);
+            m.put("started", started);
+            m.put("result", result);
+            m.put("wallTime", wallTime);
+            m.put("cpuTime", cpuTime);
+            m.put("childCpuTime", childCpuTime.get());
+            m.put("bytesRead", bytesRead.get());
+            m.put("bytesWritten", bytesWritten.get());
+            m.put("filesTouched", filesTouched.get());
+            m.put("cache", new TreeMap<>(cache));
+            m.put("counters", new TreeMap<>(counters));
+            return m;
+        }
+    }
+
+    /**
+     * Register a new execution of the project.
+     *
+     * @param projectId Project identifier
+     */
+    public synchronized Execution start(String projectId, String goal, String executionId) {
+        Execution e = new Execution(goal, executionId);
+        List<Execution> list = executions.get(projectId);
+        if (list == null) {
+            list = new ArrayList<>();
+            executions.put(projectId, list);
+        }
+        list.add(e);
+        return e;
+    }
+
+    /**
+     * Write the metrics of the project executions recorded so far.
+     */
+    public void write(String projectId, File file) throws IOException {
+        Map<String, Object> root = new LinkedHashMap<>();
+        List<Object> list = new ArrayList<>();
+        synchronized (this) {
+            List<Execution> pe = executions.get(projectId);
+            if (pe != null) {
+                for (Execution e : pe) {
+                    list.add(e.toMap());
+                }
+            }
+        }
+        root.put("project", projectId);
+        root.put("executions", list);
+        File parent = file.getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        OutputFiles.writeIfChanged(file, mapper.writeValueAsBytes(root));
+    }
+}
@@ -0,0 +1,263 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Streaming analyzer of the compiled qooxdoo scripts.
+ * <p/>
+ * The script is read in chunks and split into the class segments
+ * at the class definitions ({@code qx.Class.define("name", ...)},
+ * {@code qx.Mixin.define("name", ...)} etc.), only a small window
+ * of the script is kept in memory regardless of its size.
+ * The code before the first class definition is attributed to {@link #OTHER}.
+ * <p/>
+ * Every segment is deflated on the fly: the whole script gives the real
+ * gzip transfer size of the file, the standalone deflated size of a segment
+ * is used to apportion the file gzip size among its classes.
+ */
+public final class BundleAnalyzer {
+
+    /**
+     * Name of the code which is not a part of any class definition
+     */
+    public static final String OTHER = "<other>";
+
+    /**
+     * Size of the gzip header and trailer
+     */
+    private static final int GZIP_OVERHEAD = 18;
+
+    private static final byte[] MARKER = ".define(\"".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int MAX_NAME = 256;
+
+    /**
+     * Bytes kept in the window before they are attributed to the current segment,
+     * they may belong to the definition of the next class
+     */
+    private static final int HOLD = 1024;
+
+    private static final int CHUNK = 64 * 1024;
+
+    /**
+     * Sizes of the analyzed script
+     */
+    public static final class Result {
+
+        /**
+         * Uncompressed size
+         */
+        public long raw;
+
+        /**
+         * Gzip compressed size of the whole script
+         */
+        public long gzip;
+
+        /**
+         * Class name to {raw size, apportioned gzip size} in the order of definitions
+         */
+        public final Map<String, long[]> classes = new LinkedHashMap<>();
+    }
+
+    private final int level;
+
+    private final Deflater whole;
+
+    private final Deflater segment;
+
+    private final byte[] out = new byte[CHUNK];
+
+    private final byte[] win = new byte[CHUNK + HOLD];
+
+    private int len;
+
+    private String current;
+
+    private long currentRaw;
+
+    private long currentDeflated;
+
+    private long wholeDeflated;
+
+    /**
+     * Standalone deflated sizes of the segments
+     */
+    private final Map<String, Long> deflated = new LinkedHashMap<>();
+
+    private Result result;
+
+    /**
+     * @param level Deflate level used to estimate the transfer sizes
+     */
+    public BundleAnalyzer(int level) {
+        this.level = level;
+        this.whole = new Deflater(level, true);
+        this.segment = new Deflater(level, true);
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Release the native resources of the analyzer
+     */
+    public void close() {
+        whole.end();
+        segment.end();
+    }
+
+    public Result analyze(File file) throws IOException {
+        try (InputStream is = new FileInputStream(file)) {
+            return analyze(is);
+        }
+    }
+
+    public Result analyze(InputStream is) throws IOException {
+        result = new Result();
+        deflated.clear();
+        whole.reset();
+        segment.reset();
+        len = 0;
+        current = OTHER;
+        currentRaw = 0;
+        currentDeflated = 0;
+        wholeDeflated = 0;
+
+        byte[] buf = new byte[CHUNK];
+        int matched = 0;        // matched bytes of the marker
+        int markerStart = -1;   // window position of the marker of the class name being read
+        StringBuilder name = new StringBuilder();
+        int n;
+        while ((n = is.read(buf)) != -1) {
+            for (int i = 0; i < n; ++i) {
+                byte b = buf[i];
+                if (len == win.length) {
+                    // Keep the marker being matched and its class name in the window
+                    int keep = (markerStart != -1) ? len - markerStart + HOLD : HOLD;
+                    int cnt = flush(len - Math.min(keep, len));
+                    if (markerStart != -1) {
+                        markerStart -= cnt;
+                    }
+                }
+                win[len++] = b;
+                result.raw++;
+                if (markerStart != -1) {
+                    if (b == '"' && name.length() > 0) {
+                        startSegment(markerStart, name.toString());
+                        markerStart = -1;
+                        name.setLength(0);
+                    } else if (isNameChar(b) && name.length() < MAX_NAME) {
+                        name.append((char) b);
+                    } else {
+                        markerStart = -1;
+                        name.setLength(0);
+                    }
+                    continue;
+                }
+                if (b == MARKER[matched]) {
+                    if (++matched == MARKER.length) {
+                        markerStart = len - MARKER.length;
+                        matched = 0;
+                    }
+                } else {
+                    matched = (b == MARKER[0]) ? 1 : 0;
+                }
+            }
+        }
+        flush(len);
+        closeSegment();
+        whole.finish();
+        while (!whole.finished()) {
+            wholeDeflated += whole.deflate(out);
+        }
+        result.gzip = wholeDeflated + GZIP_OVERHEAD;
+
+        long total = 0;
+        for (Long v : deflated.values()) {
+            total += v;
+        }
+        long rest = result.gzip;
+        int cnt = 0;
+        for (Map.Entry<String, long[]> e : result.classes.entrySet()) {
+            long share = (++cnt == result.classes.size())
+                         ? rest
+                         : (total > 0 ? result.gzip * deflated.get(e.getKey()) / total : 0);
+            e.getValue()[1] = share;
+            rest -= share;
+        }
+        Result res = result;
+        result = null;
+        return res;
+    }
+
+    /**
+     * Start the new class segment. The definition call
+     * ({@code qx.Class}) preceding the marker belongs to the new segment.
+     */
+    private void startSegment(int markerStart, String name) {
+        int cut = markerStart;
+        while (cut > 0 && isNameChar(win[cut - 1])) {
+            --cut;
+        }
+        flush(cut);
+        closeSegment();
+        current = name;
+    }
+
+    private void closeSegment() {
+        segment.finish();
+        while (!segment.finished()) {
+            currentDeflated += segment.deflate(out);
+        }
+        segment.reset();
+        if (currentRaw > 0 || !OTHER.equals(current)) {
+            long[] v = result.classes.get(current);
+            if (v == null) {
+                v = new long[2];
+                result.classes.put(current, v);
+            }
+            v[0] += currentRaw;
+            Long d = deflated.get(current);
+            deflated.put(current, (d != null ? d : 0L) + currentDeflated);
+        }
+        currentRaw = 0;
+        currentDeflated = 0;
+    }
+
+    /**
+     * Attribute the first {@code cnt} bytes of the window to the current segment
+     *
+     * @return Number of the attributed bytes
+     */
+    private int flush(int cnt) {
+        if (cnt <= 0) {
+            return 0;
+        }
+        whole.setInput(win, 0, cnt);
+        while (!whole.needsInput()) {
+            wholeDeflated += whole.deflate(out);
+        }
+        segment.setInput(win, 0, cnt);
+        while (!segment.needsInput()) {
+            currentDeflated += segment.deflate(out);
+        }
+        currentRaw += cnt;
+        System.arraycopy(win, cnt, win, 0, len - cnt);
+        len -= cnt;
+        return cnt;
+    }
+
+    private static boolean isNameChar(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9')
+               || b == '.' || b == '_' || b == '$';
+    }
+}
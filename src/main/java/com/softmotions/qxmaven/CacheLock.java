@@ -0,0 +1,95 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Exclusive lock of a directory shared by concurrent builds.
+ * <p/>
+ * The lock is held on the {@code <directory>.lock} file by a {@link FileLock},
+ * so the processes of different builds are coordinated. File locks are held
+ * on behalf of the whole JVM, so the threads of the same JVM (parallel reactor builds)
+ * are serialized by an in-process semaphore before the file lock is taken.
+ */
+public final class CacheLock implements AutoCloseable {
+
+    private static final ConcurrentMap<String, Semaphore> LOCAL = new ConcurrentHashMap<>();
+
+    private final Semaphore local;
+
+    private final RandomAccessFile file;
+
+    private final FileLock lock;
+
+    private CacheLock(Semaphore local, RandomAccessFile file, FileLock lock) {
+        this.local = local;
+        this.file = file;
+        this.lock = lock;
+    }
+
+    /**
+     * Acquire the lock of the directory, blocks until the lock is available.
+     *
+     * @param dir Locked directory
+     * @param log Log to report waiting for the lock
+     */
+    public static CacheLock acquire(File dir, Log log) throws IOException {
+        File lockFile = new File(dir.getParentFile(), dir.getName() + ".lock").getCanonicalFile();
+        Semaphore local = LOCAL.get(lockFile.getPath());
+        if (local == null) {
+            Semaphore s = new Semaphore(1);
+            local = LOCAL.putIfAbsent(lockFile.getPath(), s);
+            if (local == null) {
+                local = s;
+            }
+        }
+        try {
+            if (!local.tryAcquire()) {
+                log.info("Waiting for the lock of: " + dir + " held by another build thread...");
+                local.acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the lock of: " + dir, e);
+        }
+        RandomAccessFile raf = null;
+        try {
+            lockFile.getParentFile().mkdirs();
+            raf = new RandomAccessFile(lockFile, "rw");
+            FileChannel ch = raf.getChannel();
+            FileLock lock = ch.tryLock();
+            if (lock == null) {
+                log.info("Waiting for the lock of: " + dir + " held by another build process...");
+                lock = ch.lock();
+            }
+            return new CacheLock(local, raf, lock);
+        } catch (IOException | RuntimeException e) {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ignored) {
+                }
+            }
+            local.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.release();
+            file.close();
+        } finally {
+            local.release();
+        }
+    }
+}
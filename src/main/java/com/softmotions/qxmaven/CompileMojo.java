@@ -4,11 +4,27 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.codehaus.plexus.util.FileUtils;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.util.Properties;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Goal which builds the qooxdoo application
@@ -29,24 +45,363 @@ import java.util.Properties;
       defaultPhase = LifecyclePhase.COMPILE)
 public class CompileMojo extends AbstractGeneratorMojo {
 
+    /**
+     * Max number of changed files listed in the build log.
+     */
+    private static final int MAX_LOGGED_CHANGES = 20;
+
+    /**
+     * Max number of build jobs run concurrently,
+     * zero means the number of available processors.
+     * <p/>
+     * parameter property="qooxdoo.build.threads"
+     * default-value="0"
+     */
+    @Parameter(property = "qooxdoo.build.threads",
+               defaultValue = "0")
+    protected int buildThreads;
+
+    /**
+     * Restore the generator output from the output cache if the generator inputs
+     * (sources, resources, translations, generated configuration, unpacked modules,
+     * sdk version, build jobs and their generator arguments) were already built, store it otherwise.
+     * An entry holds the complete output directories of the jobs (see {@link #jobOutputs}),
+     * they are cleared before the entry is restored.
+     * Unlike the generator cache the output cache skips the generator completely,
+     * it is keyed by the content of the inputs, so it can be shared by checkouts
+     * at different locations and by different machines.
+     * <p/>
+     * parameter property="qooxdoo.build.outputCache"
+     * default-value="false"
+     */
+    @Parameter(property = "qooxdoo.build.outputCache",
+               defaultValue = "false")
+    protected boolean outputCache;
+
+    /**
+     * Directory of the output cache, defaults to
+     * {@code .cache/qooxdoo/output} in the local Maven repository.
+     * <p/>
+     * parameter property="qooxdoo.build.outputCacheDirectory"
+     */
+    @Parameter(property = "qooxdoo.build.outputCacheDirectory")
+    protected File outputCacheDirectory;
+
+    /**
+     * Max size of the output cache in megabytes,
+     * the least recently used entries are evicted.
+     * <p/>
+     * parameter property="qooxdoo.build.outputCacheMaxSize"
+     * default-value="1024"
+     */
+    @Parameter(property = "qooxdoo.build.outputCacheMaxSize",
+               defaultValue = "1024")
+    protected long outputCacheMaxSize;
+
+    /**
+     * Output directories of the build jobs relative to the application target:
+     * job name to a comma separated list of directories. Jobs not listed here
+     * follow the qooxdoo skeleton layout: {@code build*} jobs write into {@code build},
+     * {@code source*} jobs into {@code source/script}, other jobs into the directory named by the job.
+     * The output directories are tracked by the incremental build and by the output cache.
+     * <p/>
+     * parameter
+     */
+    @Parameter
+    protected Map<String, String> jobOutputs;
+
+    /**
+     * Outputs of the completed jobs
+     */
+    private final Map<String, GeneratorOutput> outputs = Collections.synchronizedMap(new TreeMap<String, GeneratorOutput>());
+
+    /**
+     * Inputs: the qooxdoo sources, the generated configuration,
+     * the unpacked modules and the sdk version.
+     * Outputs: the generation records and the output directories of the build jobs.
+     */
+    @Override
+    protected void declareExecution(ExecutionState state) throws MojoExecutionException {
+        state.addInputs(getQooxdooSourceRoots())
+             .addInput(new File(getApplicationTarget(), this.config))
+             .addInput(new File(getApplicationTarget(), this.manifest))
+             .addInputs(getModuleMarkers())
+             .addParameter("jobs", getBuildJobs())
+             .addParameter("options", Arrays.asList(getCommandLineOptions()))
+             .addParameter("sdkVersion", getSdkVersion())
+             .addParameter("sharedCache", sharedCache ? getGeneratorCacheDirectory() : null);
+        for (String job : getBuildJobs()) {
+            state.addOutput(getGenerationFile(job));
+            for (File dir : getJobOutputDirectories(job)) {
+                state.addOutput(dir);
+            }
+        }
+        if ("true".equals(project.getProperties().get("qooxdoo.application.dependency.updated"))) {
+            state.setChanged("qooxdoo modules updated");
+        }
+    }
+
     @Override
-    public void execute() throws MojoExecutionException, MojoFailureException {
-        if (!isQooxdooSourcesChanged()) {
-            getLog().info("No Qooxdoo sources/job changed skip application generation");
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
+        logChangedSources();
+        if (!outputCache) {
+            runJobs();
             return;
         }
-        String ts = String.valueOf(System.currentTimeMillis());
-        Properties genprops = new Properties();
-        genprops.setProperty("ts", ts);
-        genprops.setProperty("job", buildJob);
+        OutputCacheStore store = createOutputCacheStore();
+        String key;
+        try {
+            key = computeCacheKey();
+            long starts = System.currentTimeMillis();
+            int restored = -1;
+            if (store.contains(key)) {
+                // The entry is the complete output of the jobs, stale files must not survive
+                for (File dir : getJobOutputDirectories()) {
+                    FileUtils.deleteDirectory(dir);
+                }
+                restored = store.restore(key, getApplicationTarget());
+            }
+            metrics.cache("output", restored >= 0);
+            if (restored >= 0) {
+                getLog().info("Restored " + restored + " generated file(s) from the output cache: " + key
+                              + " in " + (System.currentTimeMillis() - starts) + " ms");
+                metrics.addFilesTouched(restored);
+                for (String job : getBuildJobs()) {
+                    writeGeneration(job, starts);
+                }
+                return;
+            }
+        } catch (IOException e) {
+            getLog().warn("Output cache is not available", e);
+            runJobs();
+            return;
+        }
+        runJobs();
+        try {
+            List<String> generated = listJobOutputs();
+            store.store(key, getApplicationTarget(), generated);
+            getLog().info("Stored " + generated.size() + " generated file(s) into the output cache: " + key);
+        } catch (IOException e) {
+            getLog().warn("Failed to store the generator output into the cache", e);
+        }
+    }
+
+    private void runJobs() throws MojoExecutionException {
+        List<String> jobs = getBuildJobs();
+        if (jobs.size() == 1) {
+            runJob(jobs.get(0));
+            GeneratorOutput.logPhaseTable(getLog(), outputs);
+            return;
+        }
+        int threads = buildThreads > 0 ? buildThreads : Runtime.getRuntime().availableProcessors();
+        threads = Math.min(threads, jobs.size());
+        getLog().info("Running " + jobs.size() + " jobs " + jobs + " using " + threads + " threads");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (final String job : jobs) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        runJob(job);
+                        return null;
+                    }
+                }));
+            }
+            MojoExecutionException failure = null;
+            for (Future<Void> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    getLog().error(cause.getMessage());
+                    if (failure == null) {
+                        failure = (cause instanceof MojoExecutionException)
+                                  ? (MojoExecutionException) cause
+                                  : new MojoExecutionException(cause.getMessage(), cause);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            GeneratorOutput.logPhaseTable(getLog(), outputs);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-        this.setJobName(buildJob);
-        super.execute();
+    /**
+     * Output directories of all the build jobs
+     */
+    protected List<File> getJobOutputDirectories() {
+        List<File> res = new ArrayList<>();
+        for (String job : getBuildJobs()) {
+            for (File dir : getJobOutputDirectories(job)) {
+                if (!res.contains(dir)) {
+                    res.add(dir);
+                }
+            }
+        }
+        return res;
+    }
 
-        try (FileWriter fr = new FileWriter(new File(super.getApplicationTarget(), ".generation"))) {
-            genprops.store(fr, null);
-        } catch (Exception e) {
+    /**
+     * Output directories of the build job, see {@link #jobOutputs}
+     */
+    protected List<File> getJobOutputDirectories(String job) {
+        String dirs = (jobOutputs != null) ? jobOutputs.get(job) : null;
+        if (dirs == null) {
+            if (job.startsWith("build")) {
+                dirs = "build";
+            } else if (job.startsWith("source")) {
+                dirs = "source/script";
+            } else {
+                dirs = job;
+            }
+        }
+        List<File> res = new ArrayList<>();
+        for (String dir : dirs.split(",")) {
+            dir = dir.trim();
+            if (!dir.isEmpty()) {
+                res.add(new File(getApplicationTarget(), dir));
+            }
+        }
+        return res;
+    }
+
+    protected OutputCacheStore createOutputCacheStore() {
+        File root = outputCacheDirectory;
+        if (root == null) {
+            root = new File(localRepository.getBasedir(), ".cache/qooxdoo/output");
+        }
+        return new DirectoryCacheStore(root, outputCacheMaxSize * 1024 * 1024);
+    }
+
+    /**
+     * Key of the output cache: content of the qooxdoo sources relative to their roots,
+     * of the generated configuration and of the unpacked modules manifests,
+     * the sdk version, the build jobs and their generator arguments.
+     * Absolute paths are not a part of the key.
+     */
+    protected String computeCacheKey() throws IOException {
+        List<File> roots = getQooxdooSourceRoots();
+        List<File> files = new ArrayList<>();
+        files.add(new File(getApplicationTarget(), this.config));
+        files.add(new File(getApplicationTarget(), this.manifest));
+        files.addAll(getModuleMarkers());
+        FileIndex index = (executionState != null) ? executionState.getIndex() : null;
+        if (index == null) {
+            List<File> all = new ArrayList<>(roots);
+            all.addAll(files);
+            index = FileIndex.load(new File(getStateDirectory(), "output-cache.index"));
+            index.update(all);
+            if (index.isModified()) {
+                index.save();
+            }
+        }
+        TreeMap<String, FileIndex.Entry> entries = new TreeMap<>(index.getEntries());
+        StringBuilder sb = new StringBuilder();
+        sb.append(getSdkVersion()).append('\n')
+          .append(getBuildJobs()).append('\n')
+          .append(plugin != null ? plugin.getVersion() : null).append('\n');
+        for (String job : getBuildJobs()) {
+            sb.append(job).append(getCacheKeyArguments(job)).append('\n');
+        }
+        for (int i = 0; i < roots.size(); ++i) {
+            String prefix = roots.get(i).getAbsolutePath() + File.separator;
+            for (Map.Entry<String, FileIndex.Entry> e : entries.tailMap(prefix).entrySet()) {
+                if (!e.getKey().startsWith(prefix)) {
+                    break;
+                }
+                String rel = e.getKey().substring(prefix.length()).replace(File.separatorChar, '/');
+                sb.append(i).append(':').append(rel).append('\t').append(e.getValue().hash).append('\n');
+            }
+        }
+        for (int i = 0; i < files.size(); ++i) {
+            FileIndex.Entry e = entries.get(files.get(i).getAbsolutePath());
+            sb.append('#').append(i).append('\t').append(e != null ? e.hash : null).append('\n');
+        }
+        MessageDigest md = FileIndex.createDigest();
+        return FileIndex.toHex(md.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Generator arguments of the job which may change its output: the command line options
+     * and the macros. The script path, the configuration path (its content is a part of the key)
+     * and the generator cache location are left out.
+     */
+    private List<String> getCacheKeyArguments(String job) throws IOException {
+        List<String> args;
+        try {
+            args = getJobArguments(job);
+        } catch (MojoExecutionException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        List<String> res = new ArrayList<>();
+        for (int i = 1; i < args.size(); ++i) {
+            String arg = args.get(i);
+            if ("--config".equals(arg)) {
+                ++i;
+            } else if ("--macro".equals(args.get(i - 1)) && arg.startsWith("CACHE:")) {
+                res.add("CACHE:");
+            } else {
+                res.add(arg);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Files of the job output directories relative to the application target
+     */
+    private List<String> listJobOutputs() throws IOException {
+        final Path root = getApplicationTarget().toPath();
+        final List<String> files = Collections.synchronizedList(new ArrayList<String>());
+        TreeScanner.scan(getJobOutputDirectories(), new TreeScanner.Visitor() {
+            @Override
+            public boolean visit(Path path, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    files.add(root.relativize(path).toString().replace(File.separatorChar, '/'));
+                }
+                return false;
+            }
+        });
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Run the generator job and record the generation
+     */
+    private void runJob(String job) throws MojoExecutionException {
+        long ts = System.currentTimeMillis();
+        outputs.put(job, generate(job));
+        try {
+            writeGeneration(job, ts);
+        } catch (IOException e) {
             getLog().warn(e);
         }
     }
+
+    private void logChangedSources() {
+        List<String> changedSources = (executionState != null)
+                                      ? executionState.getChangedInputs()
+                                      : Collections.<String>emptyList();
+        if (changedSources.isEmpty()) {
+            return;
+        }
+        getLog().info("Qooxdoo sources changed: " + changedSources.size() + " file(s)");
+        int cnt = 0;
+        for (String path : changedSources) {
+            if (++cnt > MAX_LOGGED_CHANGES) {
+                getLog().info("  ...");
+                break;
+            }
+            getLog().info("  " + path);
+        }
+    }
 }
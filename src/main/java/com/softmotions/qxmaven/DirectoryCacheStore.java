@@ -0,0 +1,162 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Output cache store kept in a local or shared file system directory.
+ * <p/>
+ * Every entry is a directory named by its key holding the cached files
+ * and the {@link #ENTRY_FILE} with the entry size. An entry is staged
+ * in a temporary directory and published by an atomic rename, evicted entries
+ * are renamed away before they are deleted, so concurrent builds never see
+ * a partial entry. The mtime of the entry file is the last use time:
+ * the least recently used entries are evicted when the store exceeds its maximum size.
+ */
+public final class DirectoryCacheStore implements OutputCacheStore {
+
+    static final String ENTRY_FILE = ".entry";
+
+    private final File root;
+
+    private final long maxSize;
+
+    private final FileCopier copier = new FileCopier();
+
+    /**
+     * @param root    Store directory
+     * @param maxSize Max total size of the entries in bytes
+     */
+    public DirectoryCacheStore(File root, long maxSize) {
+        this.root = root;
+        this.maxSize = maxSize;
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return new File(new File(root, key), ENTRY_FILE).isFile();
+    }
+
+    @Override
+    public int restore(String key, File targetDir) throws IOException {
+        File entryDir = new File(root, key);
+        File entryFile = new File(entryDir, ENTRY_FILE);
+        if (!entryFile.isFile()) {
+            return -1;
+        }
+        entryFile.setLastModified(System.currentTimeMillis());
+        final Path sroot = entryDir.toPath();
+        final Path troot = targetDir.toPath();
+        final int[] restored = new int[1];
+        Files.walkFileTree(sroot, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path rel = sroot.relativize(file);
+                if (rel.toString().equals(ENTRY_FILE)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path dst = troot.resolve(rel.toString());
+                if (!OutputFiles.hasSameContent(file.toFile(), dst.toFile())) {
+                    Files.createDirectories(dst.getParent());
+                    copier.copy(file, dst);
+                }
+                ++restored[0];
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return restored[0];
+    }
+
+    @Override
+    public void store(String key, File sourceDir, Collection<String> files) throws IOException {
+        File entryDir = new File(root, key);
+        if (new File(entryDir, ENTRY_FILE).isFile()) {
+            return;
+        }
+        Files.createDirectories(root.toPath());
+        File staging = Files.createTempDirectory(root.toPath(), ".staging-").toFile();
+        try {
+            long size = 0;
+            for (String rel : files) {
+                Path src = new File(sourceDir, rel).toPath();
+                Path dst = new File(staging, rel).toPath();
+                Files.createDirectories(dst.getParent());
+                copier.copy(src, dst);
+                size += Files.size(dst);
+            }
+            Files.write(new File(staging, ENTRY_FILE).toPath(), String.valueOf(size).getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(staging.toPath(), entryDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                if (!new File(entryDir, ENTRY_FILE).isFile()) {
+                    throw e;
+                }
+                // Stored by a concurrent build
+            }
+        } finally {
+            if (staging.exists()) {
+                FileUtils.deleteDirectory(staging);
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Evict the least recently used entries exceeding the max size of the store
+     */
+    void evict() throws IOException {
+        File[] dirs = root.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        List<File> entries = new ArrayList<>();
+        for (File d : dirs) {
+            if (new File(d, ENTRY_FILE).isFile()) {
+                entries.add(d);
+            }
+        }
+        Collections.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File e1, File e2) {
+                return Long.compare(new File(e2, ENTRY_FILE).lastModified(), new File(e1, ENTRY_FILE).lastModified());
+            }
+        });
+        long total = 0;
+        for (File d : entries) {
+            total += getEntrySize(d);
+            if (total > maxSize) {
+                File evicted = new File(root, ".evicted-" + d.getName() + "-" + System.nanoTime());
+                if (d.renameTo(evicted)) {
+                    FileUtils.deleteDirectory(evicted);
+                }
+            }
+        }
+    }
+
+    private static long getEntrySize(File entryDir) {
+        try {
+            byte[] data = Files.readAllBytes(new File(entryDir, ENTRY_FILE).toPath());
+            return Long.parseLong(new String(data, StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+}
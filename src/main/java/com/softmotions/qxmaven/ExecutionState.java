@@ -0,0 +1,233 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Persistent state of an incremental goal execution.
+ * <p/>
+ * A goal declares its input files, input parameters and outputs.
+ * The inputs fingerprint covers the content of the input files
+ * (hashed through a {@link FileIndex}, so only modified files are read)
+ * and the parameter values. The outputs fingerprint covers the paths, sizes
+ * and mtimes of the output files, outputs are never hashed.
+ * The execution is up to date if both fingerprints match the ones
+ * saved after the last successful execution.
+ */
+public final class ExecutionState {
+
+    public static class State {
+
+        public String inputs;
+
+        public String outputs;
+    }
+
+    private final File stateFile;
+
+    private final FileIndex index;
+
+    private final List<File> inputFiles = new ArrayList<>();
+
+    private final Map<String, String> params = new TreeMap<>();
+
+    private final List<File> outputs = new ArrayList<>();
+
+    private List<String> changedInputs = Collections.emptyList();
+
+    private String inputsFingerprint;
+
+    private String changeReason;
+
+    /**
+     * @param stateDir Directory of the execution states
+     * @param key      Name of the execution unique within the project
+     */
+    public ExecutionState(File stateDir, String key) {
+        this.stateFile = new File(stateDir, key + ".json");
+        this.index = FileIndex.load(new File(stateDir, key + ".index"));
+    }
+
+    /**
+     * Input file or directory tree, missing ones are tracked as absent
+     */
+    public ExecutionState addInput(File file) {
+        if (file != null) {
+            inputFiles.add(file);
+        }
+        return this;
+    }
+
+    public ExecutionState addInputs(Collection<File> files) {
+        for (File f : files) {
+            addInput(f);
+        }
+        return this;
+    }
+
+    /**
+     * Input parameter, compared by its string value
+     */
+    public ExecutionState addParameter(String name, Object value) {
+        params.put(name, String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * Output file or directory tree
+     */
+    public ExecutionState addOutput(File file) {
+        if (file != null) {
+            outputs.add(file);
+        }
+        return this;
+    }
+
+    /**
+     * Force the execution regardless of the fingerprints
+     */
+    public ExecutionState setChanged(String reason) {
+        this.changeReason = reason;
+        return this;
+    }
+
+    /**
+     * True if the goal declared anything to track
+     */
+    public boolean isDeclared() {
+        return !inputFiles.isEmpty() || !params.isEmpty() || !outputs.isEmpty();
+    }
+
+    /**
+     * Index of the input files, valid after {@link #check()}
+     */
+    public FileIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Absolute paths of the input files changed since the last saved execution,
+     * valid after {@link #check()}
+     */
+    public List<String> getChangedInputs() {
+        return changedInputs;
+    }
+
+    /**
+     * Compare the declared inputs and outputs with the saved state.
+     *
+     * @return Null if the execution is up to date, the reason to execute it otherwise
+     */
+    public String check() throws IOException {
+        changedInputs = index.update(inputFiles);
+        inputsFingerprint = computeInputs();
+        if (changeReason != null) {
+            return changeReason;
+        }
+        State state = loadState();
+        if (state == null) {
+            return "no previous execution state";
+        }
+        if (!inputsFingerprint.equals(state.inputs)) {
+            return changedInputs.isEmpty() ? "parameters changed" : changedInputs.size() + " input file(s) changed";
+        }
+        if (!computeOutputs().equals(state.outputs)) {
+            return "outputs changed";
+        }
+        if (index.isModified()) {
+            // Only mtimes were refreshed, content is the same
+            index.save();
+        }
+        return null;
+    }
+
+    /**
+     * Forget the saved state before the execution,
+     * so a failed execution is never taken as up to date
+     */
+    public void invalidate() throws IOException {
+        if (stateFile.exists() && !stateFile.delete()) {
+            throw new IOException("Failed to delete: " + stateFile);
+        }
+    }
+
+    /**
+     * Save the state of the successful execution
+     *
+     * @return False if the saved state is the same as the existing file
+     */
+    public boolean save() throws IOException {
+        State state = new State();
+        state.inputs = (inputsFingerprint != null) ? inputsFingerprint : computeInputs();
+        state.outputs = computeOutputs();
+        index.save();
+        return OutputFiles.writeIfChanged(stateFile, new ObjectMapper().writeValueAsBytes(state));
+    }
+
+    private State loadState() {
+        if (!stateFile.isFile()) {
+            return null;
+        }
+        try {
+            return new ObjectMapper().readValue(stateFile, State.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private String computeInputs() {
+        MessageDigest md = FileIndex.createDigest();
+        StringBuilder sb = new StringBuilder();
+        for (File f : inputFiles) {
+            sb.append(f.getAbsolutePath()).append('\n');
+        }
+        for (Map.Entry<String, FileIndex.Entry> e : index.getEntries().entrySet()) {
+            sb.append(e.getKey()).append('\t').append(e.getValue().size).append('\t').append(e.getValue().hash).append('\n');
+        }
+        for (Map.Entry<String, String> e : params.entrySet()) {
+            sb.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+        }
+        return FileIndex.toHex(md.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String computeOutputs() throws IOException {
+        final Map<String, String> stamps = new ConcurrentHashMap<>();
+        List<File> roots = new ArrayList<>();
+        for (File f : outputs) {
+            if (f.exists()) {
+                roots.add(f);
+            } else {
+                stamps.put(f.getAbsolutePath(), "-");
+            }
+        }
+        TreeScanner.scan(roots, new TreeScanner.Visitor() {
+            @Override
+            public boolean visit(Path path, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    stamps.put(path.toAbsolutePath().toString(),
+                               attrs.size() + "\t" + attrs.lastModifiedTime().toMillis());
+                }
+                return false;
+            }
+        });
+        MessageDigest md = FileIndex.createDigest();
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> e : new TreeMap<>(stamps).entrySet()) {
+            sb.append(e.getKey()).append('\t').append(e.getValue()).append('\n');
+        }
+        return FileIndex.toHex(md.digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,116 @@
+package com.softmotions.qxmaven;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copier of files trying the cheapest way first:
+ * <ol>
+ * <li>hard link to the source file, if enabled and the files are on the same file system</li>
+ * <li>{@link FileChannel#transferTo}, copied by the kernel without passing
+ * the data through the Java heap ({@code copy_file_range} or {@code sendfile} on Linux)</li>
+ * <li>{@link Files#copy}</li>
+ * </ol>
+ * The target file is always replaced, never written through, so an existing hard link
+ * to the source is not modified. The timestamp of the source is kept.
+ * The copier is thread safe.
+ */
+public final class FileCopier {
+
+    private final AtomicBoolean hardlink = new AtomicBoolean();
+
+    private final AtomicBoolean transfer = new AtomicBoolean(true);
+
+    private final AtomicLong linked = new AtomicLong();
+
+    private final AtomicLong transferred = new AtomicLong();
+
+    private final AtomicLong copied = new AtomicLong();
+
+    /**
+     * Link the target files to the sources instead of copying.
+     * Safe only if the target files are never modified in place.
+     */
+    public FileCopier setHardlink(boolean hardlink) {
+        this.hardlink.set(hardlink);
+        return this;
+    }
+
+    /**
+     * Number of hard linked files
+     */
+    public long getLinked() {
+        return linked.get();
+    }
+
+    /**
+     * Number of files copied by the channel transfer
+     */
+    public long getTransferred() {
+        return transferred.get();
+    }
+
+    /**
+     * Number of files copied by the plain copy
+     */
+    public long getCopied() {
+        return copied.get();
+    }
+
+    public void copy(Path src, Path dst) throws IOException {
+        Files.deleteIfExists(dst);
+        if (hardlink.get()) {
+            try {
+                Files.createLink(dst, src);
+                linked.incrementAndGet();
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                // Different file systems or no hard links support, do not try again
+                hardlink.set(false);
+                Files.deleteIfExists(dst);
+            }
+        }
+        if (transfer.get()) {
+            try {
+                transferFile(src, dst);
+                Files.setLastModifiedTime(dst, Files.getLastModifiedTime(src));
+                transferred.incrementAndGet();
+                return;
+            } catch (IOException e) {
+                transfer.set(false);
+                Files.deleteIfExists(dst);
+            }
+        }
+        Files.copy(src, dst, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        copied.incrementAndGet();
+    }
+
+    private static void transferFile(Path src, Path dst) throws IOException {
+        try (FileChannel in = FileChannel.open(src, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(dst, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long pos = 0;
+            while (pos < size) {
+                long n = in.transferTo(pos, size - pos, out);
+                if (n <= 0) {
+                    throw new IOException("Failed to transfer: " + src);
+                }
+                pos += n;
+            }
+        }
+    }
+
+    /**
+     * Summary of the copy methods used
+     */
+    @Override
+    public String toString() {
+        return linked.get() + " linked, " + transferred.get() + " transferred, " + copied.get() + " copied";
+    }
+}
@@ -0,0 +1,225 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Persistent index of files: path, size, mtime and content hash.
+ * <p/>
+ * Files whose size and mtime match the stored entry are not re-read,
+ * so only really modified files are hashed again.
+ */
+public class FileIndex {
+
+    /**
+     * Files larger than this are hashed through memory-mapped reads.
+     */
+    static final long MMAP_THRESHOLD = 1024 * 1024;
+
+    private static final long MMAP_CHUNK = 64L * 1024 * 1024;
+
+    private static final String HASH_ALGORITHM = "SHA-1";
+
+    public static class Entry {
+
+        public long size;
+
+        public long mtime;
+
+        public String hash;
+
+        public Entry() {
+        }
+
+        Entry(long size, long mtime, String hash) {
+            this.size = size;
+            this.mtime = mtime;
+            this.hash = hash;
+        }
+    }
+
+    private final File file;
+
+    private Map<String, Entry> entries;
+
+    private boolean modified;
+
+    private int hashedFiles;
+
+    private long scanTime;
+
+    private FileIndex(File file, Map<String, Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * Load the index from the specified file.
+     * An empty index is returned if the file does not exist or cannot be parsed.
+     */
+    public static FileIndex load(File file) {
+        Map<String, Entry> entries = null;
+        if (file.isFile()) {
+            try {
+                entries = new ObjectMapper().readValue(file, new TypeReference<TreeMap<String, Entry>>() {
+                });
+            } catch (IOException ignored) {
+            }
+        }
+        return new FileIndex(file, entries != null ? entries : new TreeMap<String, Entry>());
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Map<String, Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Number of files read and hashed by the last {@link #update(Collection)}
+     */
+    public int getHashedFiles() {
+        return hashedFiles;
+    }
+
+    /**
+     * Duration of the last {@link #update(Collection)} in milliseconds
+     */
+    public long getScanTime() {
+        return scanTime;
+    }
+
+    /**
+     * True if the index differs from its persisted state.
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Save the index.
+     *
+     * @return False if the saved index is the same as the existing file
+     */
+    public boolean save() throws IOException {
+        boolean written = OutputFiles.writeIfChanged(file, new ObjectMapper().writeValueAsBytes(entries));
+        modified = false;
+        return written;
+    }
+
+    /**
+     * Scan the given roots in parallel and bring the index in sync with them.
+     *
+     * @param roots Files or directories to scan, missing ones are ignored
+     * @return Absolute paths of files whose content was added, changed or removed
+     */
+    public List<String> update(Collection<File> roots) throws IOException {
+        final Map<String, Entry> current = new ConcurrentHashMap<>();
+        final List<String> changed = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicBoolean hashed = new AtomicBoolean();
+        final AtomicInteger hashedCount = new AtomicInteger();
+        long starts = System.currentTimeMillis();
+        TreeScanner.scan(roots, new TreeScanner.Visitor() {
+            @Override
+            public boolean visit(Path path, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile()) {
+                    String key = path.toAbsolutePath().toString();
+                    Entry e = entries.get(key);
+                    long size = attrs.size();
+                    long mtime = attrs.lastModifiedTime().toMillis();
+                    if (e == null || e.size != size || e.mtime != mtime) {
+                        Entry ne = new Entry(size, mtime, hash(path, size));
+                        if (e == null || !ne.hash.equals(e.hash)) {
+                            changed.add(key);
+                        }
+                        e = ne;
+                        hashed.set(true);
+                        hashedCount.incrementAndGet();
+                    }
+                    current.put(key, e);
+                }
+                return false;
+            }
+        });
+        for (String key : entries.keySet()) {
+            if (!current.containsKey(key)) {
+                changed.add(key);
+                hashed.set(true);
+            }
+        }
+        if (hashed.get()) {
+            modified = true;
+        }
+        entries = new TreeMap<>(current);
+        hashedFiles = hashedCount.get();
+        scanTime = System.currentTimeMillis() - starts;
+        Collections.sort(changed);
+        return changed;
+    }
+
+    /**
+     * Compute the content hash of the specified file.
+     */
+    public static String hash(Path path, long size) throws IOException {
+        MessageDigest md = createDigest();
+        if (size >= MMAP_THRESHOLD) {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                long len = ch.size();
+                for (long pos = 0; pos < len; pos += MMAP_CHUNK) {
+                    MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MMAP_CHUNK, len - pos));
+                    md.update(buf);
+                }
+            }
+        } else {
+            byte[] buf = new byte[8192];
+            try (InputStream is = Files.newInputStream(path)) {
+                int r;
+                while ((r = is.read(buf)) != -1) {
+                    md.update(buf, 0, r);
+                }
+            }
+        }
+        return toHex(md.digest());
+    }
+
+    static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static String toHex(byte[] data) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] res = new char[data.length * 2];
+        for (int i = 0; i < data.length; ++i) {
+            res[i * 2] = digits[(data[i] >> 4) & 0xf];
+            res[i * 2 + 1] = digits[data[i] & 0xf];
+        }
+        return new String(res);
+    }
+}
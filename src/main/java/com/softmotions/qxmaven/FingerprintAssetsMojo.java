@@ -0,0 +1,311 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.DirectoryScanner;
+
+/**
+ * Rename the compiled application scripts to the names
+ * suffixed by the hash of their content, so they can be served
+ * with the far future expiration and {@code Cache-Control: immutable}.
+ * <p/>
+ * Scripts are renamed in the order of their references: the referenced
+ * part files first, then the loader referencing them. The references
+ * in the loader and in the html pages are rewritten to the new names.
+ * A script with the same content gets the same name in the next release.
+ * The mapping of the original names is written into
+ * {@code fingerprints.json} of the application target
+ * and packaged into {@code META-INF/qooxdoo/} of the application JAR.
+ * <p/>
+ * goal fingerprint-assets
+ * phase prepare-package
+ */
+@Mojo(name = "fingerprint-assets",
+      defaultPhase = LifecyclePhase.PREPARE_PACKAGE)
+public class FingerprintAssetsMojo extends AbstractQooxdooMojo {
+
+    public static final String MAPPING_FILE = "fingerprints.json";
+
+    protected static final String[] DEFAULT_INCLUDES = new String[]{"script/**/*.js"};
+
+    protected static final String[] DEFAULT_REFERRERS = new String[]{"**/*.html", "**/*.htm"};
+
+    /**
+     * Length of the content hash in the file names
+     */
+    private static final int HASH_LENGTH = 12;
+
+    private static final Pattern HASHED_NAME = Pattern.compile(".*\\.[0-9a-f]{" + HASH_LENGTH + "}\\.[^.]+");
+
+    /**
+     * Fingerprint the compiled scripts.
+     * <p/>
+     * parameter property="qooxdoo.fingerprint"
+     * default-value="false"
+     */
+    @Parameter(property = "qooxdoo.fingerprint",
+               defaultValue = "false")
+    protected boolean fingerprint;
+
+    /**
+     * Files to fingerprint, fileset patterns relative to the application siteroot.
+     * Defaults to the scripts of the compiled application.
+     * <p/>
+     * parameter
+     */
+    @Parameter
+    protected String[] fingerprintIncludes;
+
+    /**
+     * Files referencing the fingerprinted files but keeping their own names,
+     * fileset patterns relative to the application siteroot. Defaults to the html pages.
+     * <p/>
+     * parameter
+     */
+    @Parameter
+    protected String[] fingerprintReferrers;
+
+    protected File getRootDirectory() {
+        return new File(this.getApplicationTarget(), "siteroot");
+    }
+
+    protected File getMappingFile() {
+        return new File(this.getApplicationTarget(), MAPPING_FILE);
+    }
+
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
+        if (!fingerprint) {
+            return;
+        }
+        File rootdir = getRootDirectory();
+        if (!rootdir.isDirectory()) {
+            getLog().warn("Missing siteroot directory: " + rootdir.getPath() + " nothing to fingerprint");
+            return;
+        }
+        try {
+            fingerprintAssets(rootdir);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to fingerprint qooxdoo assets", e);
+        }
+    }
+
+    protected void fingerprintAssets(File rootdir) throws IOException, MojoExecutionException {
+        // Original names to the fingerprinted names
+        Map<String, String> mapping = new TreeMap<>();
+        File mappingFile = getMappingFile();
+        Map<String, String> previous = loadMapping(mappingFile);
+        Map<String, List<String>> names = new LinkedHashMap<>();
+        for (String rel : scan(rootdir, fingerprintIncludes != null && fingerprintIncludes.length > 0
+                                        ? fingerprintIncludes : DEFAULT_INCLUDES)) {
+            String name = rel.substring(rel.lastIndexOf('/') + 1);
+            if (previous.containsValue(rel) || HASHED_NAME.matcher(name).matches()) {
+                continue;
+            }
+            List<String> rels = names.get(name);
+            if (rels == null) {
+                rels = new ArrayList<>();
+                names.put(name, rels);
+            }
+            rels.add(rel);
+        }
+        // References are matched by the file names, so the names must be unique
+        Map<String, File> candidates = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> e : names.entrySet()) {
+            if (e.getValue().size() > 1) {
+                getLog().warn("Files: " + e.getValue() + " have the same name, they are not fingerprinted");
+                continue;
+            }
+            String rel = e.getValue().get(0);
+            candidates.put(rel, new File(rootdir, rel));
+        }
+        // Files of the previous builds are stale when the originals are generated again
+        for (Map.Entry<String, String> e : previous.entrySet()) {
+            File hashed = new File(rootdir, e.getValue());
+            if (candidates.containsKey(e.getKey())) {
+                if (hashed.isFile()) {
+                    Files.delete(hashed.toPath());
+                }
+            } else if (hashed.isFile()) {
+                mapping.put(e.getKey(), e.getValue());
+            }
+        }
+
+        Map<String, String> contents = new HashMap<>();
+        Map<String, Set<String>> deps = new LinkedHashMap<>();
+        for (Map.Entry<String, File> e : candidates.entrySet()) {
+            String data = new String(Files.readAllBytes(e.getValue().toPath()), StandardCharsets.ISO_8859_1);
+            metrics.addBytesRead(data.length());
+            contents.put(e.getKey(), data);
+            Set<String> refs = new LinkedHashSet<>();
+            for (String rel : candidates.keySet()) {
+                if (!rel.equals(e.getKey()) && referencePattern(rel).matcher(data).find()) {
+                    refs.add(rel);
+                }
+            }
+            deps.put(e.getKey(), refs);
+        }
+
+        // Referenced files first, the files of the reference cycles keep their names
+        int renamed = 0;
+        boolean progress = true;
+        while (progress && !deps.isEmpty()) {
+            progress = false;
+            for (String rel : new ArrayList<>(deps.keySet())) {
+                Set<String> refs = deps.get(rel);
+                refs.retainAll(deps.keySet());
+                if (!refs.isEmpty()) {
+                    continue;
+                }
+                deps.remove(rel);
+                String data = rewrite(contents.remove(rel), mapping);
+                byte[] bytes = data.getBytes(StandardCharsets.ISO_8859_1);
+                String hashed = getHashedName(rel, bytes);
+                File src = candidates.get(rel);
+                File dst = new File(rootdir, hashed);
+                writeFile(dst, bytes);
+                if (!src.equals(dst)) {
+                    Files.delete(src.toPath());
+                }
+                metrics.addBytesWritten(bytes.length);
+                mapping.put(rel, hashed);
+                ++renamed;
+                progress = true;
+            }
+        }
+        // Files rewritten in place keep the references of the previous build:
+        // the stale fingerprinted names are replaced by the new ones as well
+        Map<String, String> references = new TreeMap<>(mapping);
+        for (Map.Entry<String, String> e : previous.entrySet()) {
+            String hashed = mapping.get(e.getKey());
+            if (hashed != null && !hashed.equals(e.getValue())) {
+                references.put(e.getValue(), hashed);
+            }
+        }
+        // Files rewritten in place, they may be synchronized from the sources
+        List<String> rewritten = new ArrayList<>();
+        for (String rel : deps.keySet()) {
+            getLog().warn("Asset: " + rel + " is in the cycle of references, it keeps its name");
+            if (rewriteFile(candidates.get(rel), contents.get(rel), references)) {
+                rewritten.add(rel);
+            }
+        }
+
+        int referrers = 0;
+        for (String rel : scan(rootdir, fingerprintReferrers != null && fingerprintReferrers.length > 0
+                                        ? fingerprintReferrers : DEFAULT_REFERRERS)) {
+            if (mapping.containsValue(rel)) {
+                continue;
+            }
+            File f = new File(rootdir, rel);
+            String data = new String(Files.readAllBytes(f.toPath()), StandardCharsets.ISO_8859_1);
+            metrics.addBytesRead(data.length());
+            if (rewriteFile(f, data, references)) {
+                rewritten.add(rel);
+                ++referrers;
+            }
+        }
+        countWrite(SiterootSync.recordTargets(getSiterootSyncStateFile(), rootdir, rewritten));
+
+        writeFile(mappingFile, new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsBytes(mapping));
+        metrics.count("fingerprinted", renamed);
+        metrics.count("referrers", referrers);
+        metrics.addFilesTouched(renamed + referrers);
+        getLog().info("Fingerprinted assets: " + renamed + " renamed, " + (mapping.size() - renamed)
+                      + " kept from the previous build, " + referrers + " referring file(s) rewritten");
+    }
+
+    /**
+     * Write the file with the references rewritten if any.
+     *
+     * @return True if the file is changed
+     */
+    private boolean rewriteFile(File f, String data, Map<String, String> mapping) throws IOException {
+        String res = rewrite(data, mapping);
+        if (res.equals(data)) {
+            return false;
+        }
+        byte[] bytes = res.getBytes(StandardCharsets.ISO_8859_1);
+        writeFile(f, bytes);
+        metrics.addBytesWritten(bytes.length);
+        return true;
+    }
+
+    /**
+     * Replace the references to the original (or previously fingerprinted) file names by the fingerprinted names.
+     * A reference is the file name standing alone, optionally preceded by its directory path.
+     */
+    private static String rewrite(String data, Map<String, String> mapping) {
+        for (Map.Entry<String, String> e : mapping.entrySet()) {
+            String from = e.getKey().substring(e.getKey().lastIndexOf('/') + 1);
+            String to = e.getValue().substring(e.getValue().lastIndexOf('/') + 1);
+            if (data.contains(from)) {
+                data = referencePattern(e.getKey()).matcher(data).replaceAll(Matcher.quoteReplacement(to));
+            }
+        }
+        return data;
+    }
+
+    private static Pattern referencePattern(String rel) {
+        String name = rel.substring(rel.lastIndexOf('/') + 1);
+        return Pattern.compile("(?<![\\w.-])" + Pattern.quote(name) + "(?![\\w.-])");
+    }
+
+    /**
+     * Name of the file suffixed by the hash of its content: {@code script/app.js -> script/app.0123456789ab.js}
+     */
+    private static String getHashedName(String rel, byte[] data) {
+        String hash = FileIndex.toHex(FileIndex.createDigest().digest(data)).substring(0, HASH_LENGTH);
+        int sep = rel.lastIndexOf('/');
+        int idx = rel.lastIndexOf('.');
+        if (idx <= sep) {
+            return rel + "." + hash;
+        }
+        return rel.substring(0, idx) + "." + hash + rel.substring(idx);
+    }
+
+    private static List<String> scan(File rootdir, String[] includes) {
+        DirectoryScanner ds = new DirectoryScanner();
+        ds.setBasedir(rootdir);
+        ds.setIncludes(includes);
+        ds.addDefaultExcludes();
+        ds.scan();
+        List<String> res = new ArrayList<>();
+        for (String rel : ds.getIncludedFiles()) {
+            res.add(rel.replace(File.separatorChar, '/'));
+        }
+        return res;
+    }
+
+    private Map<String, String> loadMapping(File file) {
+        if (!file.isFile()) {
+            return new TreeMap<>();
+        }
+        try {
+            return new ObjectMapper().readValue(file, new TypeReference<TreeMap<String, String>>() {
+            });
+        } catch (IOException e) {
+            getLog().warn("Failed to read the assets mapping: " + file, e);
+            return new TreeMap<>();
+        }
+    }
+}
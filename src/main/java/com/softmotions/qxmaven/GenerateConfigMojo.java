@@ -39,6 +39,20 @@ public class GenerateConfigMojo extends AbstractResourcesMojo {
             "qooxdoo.submodules.dir"
     };
 
+    /**
+     * Inputs: the configuration directory and the filter properties.
+     * Outputs: the generated configuration files.
+     */
+    @Override
+    protected void declareExecution(ExecutionState state) throws MojoExecutionException {
+        this.setProperties(false);
+        state.addInput(getConfigDirectory())
+             .addParameter("filter", getFilterHash())
+             .addParameter("target", getResourcesTarget())
+             .addOutput(new File(getResourcesTarget(), this.config))
+             .addOutput(new File(getResourcesTarget(), this.manifest));
+    }
+
     /**
      * Copy and filter the resources
      * You may override these method in the parent class to fit with your needs.
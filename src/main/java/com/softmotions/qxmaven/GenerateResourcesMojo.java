@@ -1,15 +1,14 @@
 package com.softmotions.qxmaven;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -17,7 +16,10 @@ import java.util.List;
  * The qooxdoo builder is responsible for copying resources in the right location.
  * <p/>
  * This goal copy the files located into the "root" folder of the resources
- * into the target application directory
+ * into the target application directory.
+ * The target directory is synchronized incrementally: only new and changed files are copied,
+ * files removed from the resources are deleted, the filtered WEB-INF xml files are filtered
+ * again only if their content or the filter properties changed.
  *
  * goal generate-resources
  * phase generate-resources
@@ -27,24 +29,83 @@ import java.util.List;
       defaultPhase = LifecyclePhase.GENERATE_RESOURCES)
 public class GenerateResourcesMojo extends AbstractResourcesMojo {
 
+    static final String FILTERED_INCLUDES = "WEB-INF/**/*.xml";
+
+    /**
+     * Hard link the not filtered resources into the application target instead of copying.
+     * Use it only if the application target files are never modified in place,
+     * otherwise the resources sources are modified as well.
+     * <p/>
+     * parameter property="qooxdoo.resources.hardlink"
+     * default-value="false"
+     */
+    @Parameter(property = "qooxdoo.resources.hardlink",
+               defaultValue = "false")
+    protected boolean hardlinkResources;
+
+    /**
+     * Number of threads copying the resources,
+     * zero means the number of available processors.
+     * <p/>
+     * parameter property="qooxdoo.resources.copyThreads"
+     * default-value="0"
+     */
+    @Parameter(property = "qooxdoo.resources.copyThreads",
+               defaultValue = "0")
+    protected int copyThreads;
+
     File getSourceSiteRoot() {
         return new File(this.resourcesDirectory, "siteroot");
     }
 
-    public void execute() throws MojoExecutionException {
+    protected void doExecute() throws MojoExecutionException {
+        File source = getSourceSiteRoot();
+        if (!source.isDirectory()) {
+            return;
+        }
         File siteroot = getResourcesTarget();
-        if (siteroot.isDirectory()) {
-            if (!isQooxdooSourcesChanged()) {
-                getLog().info("No Qooxdoo sources/job changed skip application resources re-creation");
-            } else {
-                try {
-                    FileUtils.deleteDirectory(siteroot);
-                } catch (IOException e) {
-                    getLog().error(e);
+        this.setProperties();
+        SiterootSync sync = new SiterootSync(source, siteroot, getSiterootSyncStateFile())
+                .setFilteredIncludes(FILTERED_INCLUDES)
+                .setFilterHash(getFilterHash());
+        try {
+            sync.scan();
+            metrics.cache("siteroot", sync.isUpToDate());
+            if (sync.isUpToDate()) {
+                if (sync.isStateModified()) {
+                    countWrite(sync.save());
+                }
+                getLog().info("Application resources are up to date: " + sync.getUnchanged() + " file(s)");
+                return;
+            }
+            FileCopier copier = new FileCopier().setHardlink(hardlinkResources);
+            sync.copy(copier, copyThreads > 0 ? copyThreads : Runtime.getRuntime().availableProcessors());
+            if (!sync.getToCopy().isEmpty()) {
+                getLog().debug("Resources copy: " + copier);
+            }
+            if (!sync.getToFilter().isEmpty()) {
+                Resource filtered = new Resource();
+                filtered.setFiltering(true);
+                filtered.setDirectory(source.getAbsolutePath());
+                filtered.setIncludes(sync.getToFilter());
+                copyResourcesIfChanged(Collections.singletonList(filtered), siteroot);
+                for (String rel : sync.getToFilter()) {
+                    sync.updated(rel);
                 }
             }
+            sync.deleteOrphans();
+            countWrite(sync.save());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to synchronize application resources", e);
         }
-        super.execute();
+        getLog().info("Application resources: " + sync.getToCopy().size() + " copied, "
+                      + sync.getToFilter().size() + " filtered, " + sync.getOrphans().size() + " deleted, "
+                      + sync.getUnchanged() + " unchanged");
+        metrics.addBytesWritten(sync.getCopiedBytes());
+        metrics.addFilesTouched(sync.getToCopy().size() + sync.getToFilter().size() + sync.getOrphans().size());
+        metrics.count("copied", sync.getToCopy().size());
+        metrics.count("filtered", sync.getToFilter().size());
+        metrics.count("deleted", sync.getOrphans().size());
     }
 
     /**
@@ -60,13 +121,13 @@ public class GenerateResourcesMojo extends AbstractResourcesMojo {
             Resource config = new Resource();
             config.setFiltering(false);
             config.setDirectory(siteroot.getAbsolutePath());
-            config.setExcludes(Collections.singletonList("WEB-INF/**/*.xml"));
+            config.setExcludes(Collections.singletonList(FILTERED_INCLUDES));
             resources.add(config);
 
             config = new Resource();
             config.setFiltering(true);
             config.setDirectory(siteroot.getAbsolutePath());
-            config.setIncludes(Collections.singletonList("WEB-INF/**/*.xml"));
+            config.setIncludes(Collections.singletonList(FILTERED_INCLUDES));
             resources.add(config);
         }
         return resources;
@@ -0,0 +1,223 @@
+package com.softmotions.qxmaven;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.exec.LogOutputStream;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Asynchronous line pump for python script output.
+ * <p/>
+ * Lines are queued into a bounded buffer and sent to the Maven log
+ * by a separate thread, so a slow log does not block the child process
+ * until the buffer is full. Then the stream pump waits for the log,
+ * no line is ever dropped.
+ * Generator phase headers are recognised and timed.
+ */
+public class GeneratorOutput {
+
+    private static final String[] END = new String[2];
+
+    /**
+     * Known generator phase headers, first match wins.
+     */
+    private static final Pattern[] PHASE_PATTERNS = {
+            Pattern.compile("(?i)dependenc|sorting classes"),
+            Pattern.compile("(?i)resource|asset"),
+            Pattern.compile("(?i)compil|minif|optimiz"),
+            Pattern.compile("(?i)writ|packages|parts|loader")
+    };
+
+    private static final String[] PHASE_NAMES = {
+            "dependency analysis",
+            "resource info",
+            "compiling",
+            "writing parts"
+    };
+
+    private static final Pattern HEADER = Pattern.compile("^\\s*>>>\\s*(.+?)[\\s.:]*$");
+
+    private final Log log;
+
+    private final String prefix;
+
+    private final BlockingQueue<String[]> queue;
+
+    private final Map<String, Long> phaseTimes = new LinkedHashMap<>();
+
+    private final Thread consumer;
+
+    private String phase;
+
+    private long phaseStarts;
+
+    private final long starts;
+
+    private volatile long finished;
+
+    /**
+     * @param log      Target log
+     * @param prefix   Prefix of the logged lines, may be null
+     * @param capacity Max number of buffered lines
+     */
+    public GeneratorOutput(final Log log, String prefix, int capacity) {
+        this.log = log;
+        this.prefix = (prefix != null) ? "[" + prefix + "] " : "";
+        this.queue = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+        this.starts = System.currentTimeMillis();
+        this.consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "qooxdoo-output" + (prefix != null ? "-" + prefix : ""));
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * Create a stream feeding this pump.
+     *
+     * @param error True for the process error stream
+     */
+    public LogOutputStream stream(final boolean error) {
+        return new LogOutputStream() {
+            @Override
+            protected void processLine(String line, int logLevel) {
+                addLine(line, error);
+            }
+        };
+    }
+
+    public void addLine(String line, boolean error) {
+        onLine(line);
+        try {
+            queue.put(new String[]{line, error ? "E" : null});
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // The consumer may be gone, log the line directly
+            if (error) {
+                log.warn(prefix + line);
+            } else {
+                log.info(prefix + line);
+            }
+        }
+    }
+
+    /**
+     * Flush the buffered lines and stop the phase timing.
+     */
+    public void close() {
+        finished = System.currentTimeMillis();
+        synchronized (phaseTimes) {
+            closePhase(finished);
+        }
+        try {
+            queue.put(END);
+            consumer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wall time in milliseconds of each recognised generator phase
+     */
+    public Map<String, Long> getPhaseTimes() {
+        synchronized (phaseTimes) {
+            return new LinkedHashMap<>(phaseTimes);
+        }
+    }
+
+    /**
+     * Wall time in milliseconds between the pump creation and its closing
+     */
+    public long getElapsedTime() {
+        return (finished > 0 ? finished : System.currentTimeMillis()) - starts;
+    }
+
+    private void onLine(String line) {
+        Matcher m = HEADER.matcher(line);
+        if (!m.matches()) {
+            return;
+        }
+        String header = m.group(1);
+        String name = "other";
+        for (int i = 0; i < PHASE_PATTERNS.length; ++i) {
+            if (PHASE_PATTERNS[i].matcher(header).find()) {
+                name = PHASE_NAMES[i];
+                break;
+            }
+        }
+        long now = System.currentTimeMillis();
+        synchronized (phaseTimes) {
+            if (name.equals(phase)) {
+                return;
+            }
+            closePhase(now);
+            phase = name;
+            phaseStarts = now;
+        }
+    }
+
+    private void closePhase(long now) {
+        if (phase == null) {
+            return;
+        }
+        Long t = phaseTimes.get(phase);
+        phaseTimes.put(phase, (t != null ? t : 0L) + (now - phaseStarts));
+        phase = null;
+    }
+
+    private void consume() {
+        try {
+            while (true) {
+                String[] item = queue.take();
+                if (item == END) {
+                    break;
+                }
+                if (item[1] != null) {
+                    log.warn(prefix + item[0]);
+                } else {
+                    log.info(prefix + item[0]);
+                }
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * Log the phase timing table of the specified outputs
+     *
+     * @param outputs Outputs keyed by job name
+     */
+    public static void logPhaseTable(Log log, Map<String, GeneratorOutput> outputs) {
+        if (outputs.isEmpty()) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        String fmt = "  %-12s %-20s %10s %6s";
+        lines.add(String.format(fmt, "job", "phase", "time", "%"));
+        for (Map.Entry<String, GeneratorOutput> e : outputs.entrySet()) {
+            long total = e.getValue().getElapsedTime();
+            for (Map.Entry<String, Long> pe : e.getValue().getPhaseTimes().entrySet()) {
+                lines.add(String.format(fmt, e.getKey(), pe.getKey(),
+                                        String.format("%.1f s", pe.getValue() / 1000.0),
+                                        total > 0 ? String.valueOf(pe.getValue() * 100 / total) : "-"));
+            }
+            lines.add(String.format(fmt, e.getKey(), "total", String.format("%.1f s", total / 1000.0), "100"));
+        }
+        log.info("Generator phase timings:");
+        for (String l : lines) {
+            log.info(l);
+        }
+    }
+}
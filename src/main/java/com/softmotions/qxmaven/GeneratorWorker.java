@@ -0,0 +1,216 @@
+package com.softmotions.qxmaven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Long-lived python interpreter running qooxdoo tool scripts on request.
+ * <p/>
+ * Job requests are sent as JSON lines over the worker stdin,
+ * the script output is read from the worker stdout up to the end-of-job sentinel.
+ * Idle workers are pooled per interpreter and script, so consecutive jobs
+ * of a build (or a watch loop) reuse the warmed up interpreter.
+ */
+final class GeneratorWorker {
+
+    private static final String SENTINEL = "\u001eQXWORKER-DONE";
+
+    private static final String WORKER_SCRIPT = "generator-worker.py";
+
+    private static final Map<String, Deque<GeneratorWorker>> IDLE = new HashMap<>();
+
+    private static final List<GeneratorWorker> ALL = new ArrayList<>();
+
+    private static File workerScript;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                shutdown();
+            }
+        }, "qooxdoo-worker-shutdown"));
+    }
+
+    private final String key;
+
+    private final Process process;
+
+    private final OutputStream stdin;
+
+    private final BufferedReader stdout;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private int jobs;
+
+    private long firstJobTime;
+
+    private GeneratorWorker(String key, Process process) {
+        this.key = key;
+        this.process = process;
+        this.stdin = process.getOutputStream();
+        this.stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Take an idle worker for the given interpreter and script or start a new one.
+     */
+    static GeneratorWorker acquire(String interpreter, File script, Log log) throws IOException {
+        String key = interpreter + File.pathSeparator + script.getAbsolutePath();
+        synchronized (IDLE) {
+            Deque<GeneratorWorker> idle = IDLE.get(key);
+            while (idle != null && !idle.isEmpty()) {
+                GeneratorWorker w = idle.pop();
+                if (w.isAlive()) {
+                    return w;
+                }
+                w.destroy();
+            }
+        }
+        List<String> cmd = new ArrayList<>();
+        cmd.add(interpreter);
+        cmd.add("-u");
+        cmd.add(getWorkerScript().getAbsolutePath());
+        log.info("Starting persistent python worker: " + cmd);
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        pb.redirectErrorStream(true);
+        GeneratorWorker w = new GeneratorWorker(key, pb.start());
+        synchronized (IDLE) {
+            ALL.add(w);
+        }
+        return w;
+    }
+
+    /**
+     * Return the worker into the idle pool.
+     */
+    static void release(GeneratorWorker w) {
+        if (!w.isAlive()) {
+            w.destroy();
+            return;
+        }
+        synchronized (IDLE) {
+            Deque<GeneratorWorker> idle = IDLE.get(w.key);
+            if (idle == null) {
+                idle = new ArrayDeque<>();
+                IDLE.put(w.key, idle);
+            }
+            idle.push(w);
+        }
+    }
+
+    static void shutdown() {
+        List<GeneratorWorker> workers;
+        synchronized (IDLE) {
+            workers = new ArrayList<>(ALL);
+            ALL.clear();
+            IDLE.clear();
+        }
+        for (GeneratorWorker w : workers) {
+            w.destroy();
+        }
+    }
+
+    private static synchronized File getWorkerScript() throws IOException {
+        if (workerScript == null || !workerScript.isFile()) {
+            File f = File.createTempFile("qx-worker", ".py");
+            f.deleteOnExit();
+            try (InputStream is = GeneratorWorker.class.getResourceAsStream(WORKER_SCRIPT)) {
+                if (is == null) {
+                    throw new IOException("Missing resource: " + WORKER_SCRIPT);
+                }
+                Files.copy(is, f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            workerScript = f;
+        }
+        return workerScript;
+    }
+
+    Process getProcess() {
+        return process;
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    /**
+     * Number of jobs completed by this worker.
+     */
+    int getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Wall time of the first job of this worker including the interpreter startup.
+     */
+    long getFirstJobTime() {
+        return firstJobTime;
+    }
+
+    /**
+     * Run the script with the specified arguments.
+     *
+     * @param args   Script path followed by the script arguments
+     * @param output Receives the script output
+     * @return Script exit code
+     */
+    int run(List<String> args, GeneratorOutput output) throws IOException {
+        long starts = System.currentTimeMillis();
+        Map<String, Object> req = new LinkedHashMap<>();
+        req.put("script", args.get(0));
+        req.put("args", args.subList(1, args.size()));
+        stdin.write(mapper.writeValueAsBytes(req));
+        stdin.write('\n');
+        stdin.flush();
+        String line;
+        while ((line = stdout.readLine()) != null) {
+            if (line.startsWith(SENTINEL)) {
+                String[] parts = line.substring(SENTINEL.length()).trim().split(" ");
+                if (jobs++ == 0) {
+                    firstJobTime = System.currentTimeMillis() - starts;
+                }
+                return Integer.parseInt(parts[0]);
+            }
+            output.addLine(line, false);
+        }
+        destroy();
+        throw new IOException("Python worker terminated unexpectedly, exit code: " + exitValue());
+    }
+
+    private int exitValue() {
+        try {
+            return process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    void destroy() {
+        try {
+            stdin.close();
+        } catch (IOException ignored) {
+        }
+        process.destroy();
+    }
+}
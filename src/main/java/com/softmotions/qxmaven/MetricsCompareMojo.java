@@ -0,0 +1,155 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compare two build metrics files written by the qooxdoo goals
+ * and report the executions whose measures grew over the threshold.
+ * <p/>
+ * Example: {@code mvn qooxdoo:metrics-compare -Dqooxdoo.metrics.baseline=baseline.json}
+ * <p/>
+ * goal metrics-compare
+ */
+@Mojo(name = "metrics-compare",
+      requiresProject = false)
+public class MetricsCompareMojo extends AbstractMojo {
+
+    /**
+     * The JVM {@code cpuTime} is not compared, in the parallel builds
+     * it includes the executions of the other modules.
+     */
+    private static final String[] MEASURES = {
+            "wallTime", "childCpuTime", "bytesRead", "bytesWritten", "filesTouched"
+    };
+
+    /**
+     * Baseline metrics file.
+     * <p/>
+     * parameter property="qooxdoo.metrics.baseline"
+     * required
+     */
+    @Parameter(property = "qooxdoo.metrics.baseline",
+               required = true)
+    protected File baseline;
+
+    /**
+     * Current metrics file.
+     * <p/>
+     * parameter property="qooxdoo.metrics.current"
+     * default-value="${project.build.directory}/qooxdoo/build-metrics.json"
+     */
+    @Parameter(property = "qooxdoo.metrics.current",
+               defaultValue = "${project.build.directory}/qooxdoo/build-metrics.json")
+    protected File current;
+
+    /**
+     * Allowed growth of a measure in percents.
+     * <p/>
+     * parameter property="qooxdoo.metrics.threshold"
+     * default-value="10"
+     */
+    @Parameter(property = "qooxdoo.metrics.threshold",
+               defaultValue = "10")
+    protected double threshold;
+
+    /**
+     * Growth of a measure ignored regardless of the threshold,
+     * milliseconds for times, bytes or files for the other measures.
+     * Filters out the noise of very short executions.
+     * <p/>
+     * parameter property="qooxdoo.metrics.minDelta"
+     * default-value="100"
+     */
+    @Parameter(property = "qooxdoo.metrics.minDelta",
+               defaultValue = "100")
+    protected long minDelta;
+
+    /**
+     * Fail the build if a regression is found.
+     * <p/>
+     * parameter property="qooxdoo.metrics.failOnRegression"
+     * default-value="false"
+     */
+    @Parameter(property = "qooxdoo.metrics.failOnRegression",
+               defaultValue = "false")
+    protected boolean failOnRegression;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        Map<String, JsonNode> base = load(baseline);
+        Map<String, JsonNode> cur = load(current);
+        List<String> regressions = new ArrayList<>();
+        String fmt = "  %-40s %-14s %14s %14s %8s";
+        getLog().info(String.format(fmt, "execution", "measure", "baseline", "current", "change"));
+        for (Map.Entry<String, JsonNode> e : cur.entrySet()) {
+            JsonNode b = base.get(e.getKey());
+            if (b == null) {
+                getLog().info(String.format("  %-40s missing in the baseline", e.getKey()));
+                continue;
+            }
+            for (String m : MEASURES) {
+                long bv = b.path(m).asLong();
+                long cv = e.getValue().path(m).asLong();
+                String change = (bv > 0) ? String.format("%+.1f%%", (cv - bv) * 100.0 / bv) : "-";
+                String line = String.format(fmt, e.getKey(), m, bv, cv, change);
+                if (cv - bv > minDelta && cv > bv * (1 + threshold / 100)) {
+                    regressions.add(line);
+                    getLog().warn(line);
+                } else {
+                    getLog().info(line);
+                }
+            }
+        }
+        if (regressions.isEmpty()) {
+            getLog().info("No build performance regressions found");
+            return;
+        }
+        String msg = regressions.size() + " build performance regression(s) over " + threshold + "% found";
+        if (failOnRegression) {
+            throw new MojoFailureException(msg);
+        }
+        getLog().warn(msg);
+    }
+
+    /**
+     * Load the executions of a metrics file keyed by the
+     * project, goal, execution id and the execution number.
+     * The project is keyed by its group and artifact ids only,
+     * so the files written by the different versions are comparable.
+     */
+    private Map<String, JsonNode> load(File file) throws MojoExecutionException {
+        if (file == null || !file.isFile()) {
+            throw new MojoExecutionException("Missing build metrics file: " + file);
+        }
+        Map<String, JsonNode> res = new LinkedHashMap<>();
+        try {
+            JsonNode root = new ObjectMapper().readTree(file);
+            String[] ids = root.path("project").asText().split(":");
+            String project = (ids.length > 1) ? ids[0] + ":" + ids[1] : ids[0];
+            for (JsonNode ex : root.path("executions")) {
+                String key = project + " " + ex.path("goal").asText() + "@" + ex.path("executionId").asText();
+                String k = key;
+                for (int i = 2; res.containsKey(k); ++i) {
+                    k = key + "#" + i;
+                }
+                res.put(k, ex);
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to read build metrics file: " + file, e);
+        }
+        return res;
+    }
+}
@@ -7,13 +7,33 @@ import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
-import org.codehaus.plexus.archiver.UnArchiver;
-import org.codehaus.plexus.archiver.manager.NoSuchArchiverException;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.FileUtils;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -31,76 +51,372 @@ import java.util.jar.Manifest;
       defaultPhase = LifecyclePhase.INITIALIZE)
 public class ModulesUnpackMojo extends AbstractQooxdooMojo {
 
+    /**
+     * Unpack every qooxdoo sdk version only once per machine into the sdk store
+     * and link it into the project instead of unpacking the sdk into every project.
+     * The linked sdk is shared, it must not be modified by the build.
+     * <p/>
+     * parameter property="qooxdoo.sdk.store"
+     * default-value="false"
+     */
+    @Parameter(property = "qooxdoo.sdk.store",
+               defaultValue = "false")
+    protected boolean sdkStore;
+
+    /**
+     * Root of the sdk store, defaults to
+     * {@code .cache/qooxdoo/sdk} in the local Maven repository.
+     * <p/>
+     * parameter property="qooxdoo.sdk.storeDirectory"
+     */
+    @Parameter(property = "qooxdoo.sdk.storeDirectory")
+    protected File sdkStoreDirectory;
+
+    /**
+     * Number of threads used to extract the sdk and module archives,
+     * zero means the number of available processors.
+     * <p/>
+     * parameter property="qooxdoo.unpack.threads"
+     * default-value="0"
+     */
+    @Parameter(property = "qooxdoo.unpack.threads",
+               defaultValue = "0")
+    protected int unpackThreads;
+
+    /**
+     * Re-extract a changed sdk or module differentially: only the files
+     * whose CRC32 or size differ are rewritten, unchanged files keep their timestamps,
+     * files removed from the archive are deleted. Otherwise the target directory
+     * is cleaned and the whole archive is extracted.
+     * <p/>
+     * parameter property="qooxdoo.unpack.differential"
+     * default-value="true"
+     */
+    @Parameter(property = "qooxdoo.unpack.differential",
+               defaultValue = "true")
+    protected boolean unpackDifferential;
+
+    /**
+     * Link the qooxdoo libraries built in the same reactor directly
+     * to their source directories instead of unpacking their source JARs.
+     * <p/>
+     * parameter property="qooxdoo.reactor.link"
+     * default-value="true"
+     */
+    @Parameter(property = "qooxdoo.reactor.link",
+               defaultValue = "true")
+    protected boolean reactorLink;
 
-    public void execute() throws MojoExecutionException {
+    /**
+     * Inputs: the sdk and module artifacts, the manifests of the linked reactor libraries
+     * and the unpacking parameters. Outputs: the sdk version file and the module directories.
+     */
+    @Override
+    protected void declareExecution(ExecutionState state) throws MojoExecutionException {
+        Artifact sdk = getQooxdooSdkArtifact();
+        state.addParameter("sdk", sdk != null ? sdk.getId() : null)
+             .addParameter("sdkStore", sdkStore ? String.valueOf(sdkStoreDirectory) : null)
+             .addParameter("differential", unpackDifferential)
+             .addParameter("reactorLink", reactorLink)
+             .addOutput(new File(getSdkDirectory(), "version.txt"));
+        if (sdk != null) {
+            state.addInput(sdk.getFile());
+        }
+        List<Dependency> candidates = new ArrayList<>();
+        for (Dependency d : getModuleDependencies()) {
+            state.addOutput(new File(this.modulesCacheDirectory, d.getArtifactId()));
+            Map<String, Object> lib = reactorLink ? findReactorLibrary(d) : null;
+            if (lib != null) {
+                state.addInput((File) lib.get("manifest"))
+                     .addParameter("link:" + d.getManagementKey(), new TreeMap<>(lib));
+            } else {
+                candidates.add(d);
+            }
+        }
+        for (Artifact af : resolveModules(candidates, false)) {
+            if (af != null) {
+                state.addInput(af.getFile())
+                     .addParameter("module:" + af.getDependencyConflictId(), af.getId());
+            }
+        }
+    }
+
+    @Override
+    protected void onSkipped() throws MojoExecutionException {
+        setBuildOutputDirectory();
+        List<File> linkedRoots = new ArrayList<>();
+        if (reactorLink) {
+            for (Dependency d : getModuleDependencies()) {
+                Map<String, Object> lib = findReactorLibrary(d);
+                if (lib != null) {
+                    addLinkedRoots(lib, linkedRoots);
+                }
+            }
+        }
+        if (!linkedRoots.isEmpty()) {
+            project.setContextValue(CONTEXT_LINKED_ROOTS, linkedRoots);
+        }
+    }
+
+    protected void doExecute() throws MojoExecutionException {
+        setBuildOutputDirectory();
+        unpackSdk();
+        unpackModules();
+    }
+
+    private void setBuildOutputDirectory() throws MojoExecutionException {
         Build build = project.getBuild();
         try {
             build.setOutputDirectory(outputDirectory.getCanonicalPath());
         } catch (IOException e) {
             throw new MojoExecutionException("", e);
         }
-        unpackSdk();
-        unpackModules();
     }
 
+    /**
+     * Declared qooxdoo source jars, the only dependencies worth resolving
+     */
+    private List<Dependency> getModuleDependencies() {
+        List<Dependency> res = new ArrayList<>();
+        for (Dependency d : project.getDependencies()) {
+            if (!d.isOptional() &&
+                "sources".equals(d.getClassifier()) &&
+                "jar".equals(d.getType())) {
+                res.add(d);
+            }
+        }
+        return res;
+    }
 
     void unpackModules() throws MojoExecutionException {
-        for (final Dependency d : project.getDependencies()) {
-            Artifact af = resolveJarArtifact(d);
-            if (af == null ||
-                af.isOptional() ||
-                !"sources".equals(af.getClassifier()) ||
-                !"jar".equals(af.getType())) {
-                continue;
-            }
-            File moduleDir = new File(this.modulesCacheDirectory, af.getArtifactId());
-            File afile = af.getFile();
-            try (JarFile jfile = new JarFile(afile)) {
-                Manifest mf = jfile.getManifest();
-                if (mf == null) {
-                    continue;
-                }
-                Attributes mainAttributes = mf.getMainAttributes();
-                String appVersion = mf.getMainAttributes().getValue("Qooxdoo-App-Version");
-                if (appVersion == null) {
-                    continue;
+        List<Dependency> candidates = new ArrayList<>();
+        List<File> linkedRoots = new ArrayList<>();
+        for (Dependency d : getModuleDependencies()) {
+            if (!reactorLink || !linkReactorLibrary(d, linkedRoots)) {
+                candidates.add(d);
+            }
+        }
+        if (!linkedRoots.isEmpty()) {
+            project.setContextValue(CONTEXT_LINKED_ROOTS, linkedRoots);
+        }
+        for (Artifact af : resolveModules(candidates, true)) {
+            if (af != null) {
+                extractModule(af);
+            }
+        }
+    }
+
+    /**
+     * Resolve the module artifacts and optionally check their unpacked copies in parallel
+     *
+     * @param outdatedOnly Skip the modules whose unpacked copies are up to date
+     * @return Artifacts in the order of the dependencies, null for unresolved and skipped ones
+     */
+    private List<Artifact> resolveModules(List<Dependency> candidates, final boolean outdatedOnly)
+            throws MojoExecutionException {
+        List<Artifact> res = new ArrayList<>();
+        if (candidates.size() <= 1) {
+            for (Dependency d : candidates) {
+                res.add(resolveModule(d, outdatedOnly));
+            }
+            return res;
+        }
+        int nthreads = Math.min(candidates.size(), Math.max(4, Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(nthreads);
+        try {
+            List<Future<Artifact>> futures = new ArrayList<>();
+            for (final Dependency d : candidates) {
+                futures.add(pool.submit(new Callable<Artifact>() {
+                    @Override
+                    public Artifact call() throws Exception {
+                        return resolveModule(d, outdatedOnly);
+                    }
+                }));
+            }
+            for (Future<Artifact> f : futures) {
+                res.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MojoExecutionException) {
+                throw (MojoExecutionException) e.getCause();
+            }
+            throw new MojoExecutionException("Failed to resolve qooxdoo modules", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return res;
+    }
+
+    /**
+     * Library published by the qooxdoo project of the same reactor
+     *
+     * @return Library description or null
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> findReactorLibrary(Dependency d) {
+        for (MavenProject p : session.getProjects()) {
+            if (p.getGroupId().equals(d.getGroupId()) &&
+                p.getArtifactId().equals(d.getArtifactId()) &&
+                p.getVersion().equals(d.getVersion())) {
+                Map<String, Object> lib = (Map<String, Object>) p.getContextValue(CONTEXT_LIBRARY);
+                return (lib != null && ((File) lib.get("manifest")).isFile()) ? lib : null;
+            }
+        }
+        return null;
+    }
+
+    private static void addLinkedRoots(Map<String, Object> lib, List<File> linkedRoots) {
+        for (String key : new String[]{"class", "resource", "translation"}) {
+            File dir = (File) lib.get(key);
+            if (dir != null) {
+                linkedRoots.add(dir);
+            }
+        }
+    }
+
+    /**
+     * Link the qooxdoo library built in the same reactor: the module directory
+     * gets the library manifest referring to the library source directories,
+     * nothing is archived or extracted.
+     *
+     * @param linkedRoots Receives the linked library source directories
+     * @return False if the dependency is not a qooxdoo library of the reactor
+     */
+    private boolean linkReactorLibrary(Dependency d, List<File> linkedRoots) throws MojoExecutionException {
+        Map<String, Object> lib = findReactorLibrary(d);
+        if (lib == null) {
+            return false;
+        }
+        File moduleDir = new File(this.modulesCacheDirectory, d.getArtifactId());
+        File linkFile = new File(moduleDir, (String) lib.get("manifestName"));
+        File marker = new File(moduleDir, ".reactor-link");
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        try {
+            ObjectNode mfNode = (ObjectNode) mapper.readTree((File) lib.get("manifest"));
+            ObjectNode mfProvides = mfNode.with("provides");
+            for (String key : new String[]{"class", "resource", "translation"}) {
+                File dir = (File) lib.get(key);
+                if (dir != null) {
+                    mfProvides.put(key, relativePath(moduleDir, dir));
                 }
-                if (moduleDir.exists() && moduleDir.lastModified() >= afile.lastModified()) {
-                    File oldMfFile = new File(moduleDir, "META-INF/MANIFEST.MF");
-                    if (oldMfFile.exists()) {
-                        try (FileInputStream fis = new FileInputStream(oldMfFile)) {
-                            Manifest oldMf = new Manifest(fis);
-                            String oldTs = oldMf.getMainAttributes().getValue("Qooxdoo-Jar-Timestamp");
-                            String newTs = mainAttributes.getValue("Qooxdoo-Jar-Timestamp");
-                            if (newTs != null && newTs.equals(oldTs)) {
-                                getLog().info("Unpacked artifact: " + af + " is up to date");
-                                continue;
-                            }
+            }
+            addLinkedRoots(lib, linkedRoots);
+            mfProvides.put("type", "library");
+            byte[] data = mapper.writeValueAsBytes(mfNode);
+            if (marker.isFile() && linkFile.isFile() && Arrays.equals(data, Files.readAllBytes(linkFile.toPath()))) {
+                getLog().info("Linked reactor library: " + d.getArtifactId() + " is up to date");
+                metrics.cache(d.getArtifactId(), true);
+                return true;
+            }
+            if (moduleDir.exists() && !marker.isFile()) {
+                // Drop the previously extracted source JAR
+                FileUtils.cleanDirectory(moduleDir);
+                Files.deleteIfExists(getUnpackIndexFile(d.getArtifactId()).toPath());
+            }
+            moduleDir.mkdirs();
+            writeFile(linkFile, data);
+            if (!marker.isFile()) {
+                Files.write(marker.toPath(), new byte[0]);
+            }
+        } catch (IOException | ClassCastException e) {
+            throw new MojoExecutionException("Failed to link reactor library: " + d.getArtifactId(), e);
+        }
+        getLog().info("Linked reactor library: " + d.getArtifactId() + " into: " + moduleDir);
+        metrics.cache(d.getArtifactId(), false);
+        project.getProperties().setProperty("qooxdoo.application.dependency.updated", "true");
+        return true;
+    }
+
+    private static String relativePath(File from, File to) {
+        try {
+            return from.getAbsoluteFile().toPath().relativize(to.getAbsoluteFile().toPath())
+                       .toString().replace(File.separatorChar, '/');
+        } catch (IllegalArgumentException e) {
+            // Different file system roots
+            return to.getAbsolutePath();
+        }
+    }
+
+    private Artifact resolveModule(Dependency d, boolean outdatedOnly) throws MojoExecutionException {
+        Artifact af = resolveJarArtifact(d);
+        if (af != null && outdatedOnly && !isModuleOutdated(af)) {
+            return null;
+        }
+        return af;
+    }
+
+    /**
+     * Check if the unpacked copy of the qooxdoo module is outdated.
+     *
+     * @return False if the module is up to date or is not a qooxdoo module
+     */
+    private boolean isModuleOutdated(Artifact af) throws MojoExecutionException {
+        if (af.isOptional() ||
+            !"sources".equals(af.getClassifier()) ||
+            !"jar".equals(af.getType())) {
+            return false;
+        }
+        File moduleDir = new File(this.modulesCacheDirectory, af.getArtifactId());
+        File afile = af.getFile();
+        try (JarFile jfile = new JarFile(afile)) {
+            Manifest mf = jfile.getManifest();
+            if (mf == null) {
+                return false;
+            }
+            Attributes mainAttributes = mf.getMainAttributes();
+            String appVersion = mf.getMainAttributes().getValue("Qooxdoo-App-Version");
+            if (appVersion == null) {
+                return false;
+            }
+            if (moduleDir.exists() && moduleDir.lastModified() >= afile.lastModified()) {
+                File oldMfFile = new File(moduleDir, "META-INF/MANIFEST.MF");
+                if (oldMfFile.exists()) {
+                    try (FileInputStream fis = new FileInputStream(oldMfFile)) {
+                        Manifest oldMf = new Manifest(fis);
+                        String oldTs = oldMf.getMainAttributes().getValue("Qooxdoo-Jar-Timestamp");
+                        String newTs = mainAttributes.getValue("Qooxdoo-Jar-Timestamp");
+                        if (newTs != null && newTs.equals(oldTs)) {
+                            getLog().info("Unpacked artifact: " + af + " is up to date");
+                            metrics.cache(af.getArtifactId(), true);
+                            return false;
                         }
                     }
                 }
-            } catch (IOException e) {
-                throw new MojoExecutionException("Error JAR access: " + af, e);
             }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error JAR access: " + af, e);
+        }
+        return true;
+    }
 
-            try {
-                if (moduleDir.exists()) {
-                    FileUtils.cleanDirectory(moduleDir);
-                } else {
-                    moduleDir.mkdirs();
-                }
-                getLog().info("Extracting qooxdoo source artifact: " + af + " into: " + moduleDir.getCanonicalPath());
-                UnArchiver unArchiver = archiverManager.getUnArchiver(afile);
-                unArchiver.setOverwrite(true);
-                unArchiver.setSourceFile(afile);
-                unArchiver.setDestDirectory(moduleDir);
-                unArchiver.extract();
+    private void extractModule(Artifact af) throws MojoExecutionException {
+        File moduleDir = new File(this.modulesCacheDirectory, af.getArtifactId());
+        try {
+            File indexFile = null;
+            if (unpackDifferential) {
+                indexFile = getUnpackIndexFile(af.getArtifactId());
+                moduleDir.mkdirs();
+            } else if (moduleDir.exists()) {
+                FileUtils.cleanDirectory(moduleDir);
+            } else {
+                moduleDir.mkdirs();
+            }
+            getLog().info("Extracting qooxdoo source artifact: " + af + " into: " + moduleDir.getCanonicalPath());
+            ZipExtractor ze = unzip(af.getFile(), null, moduleDir, indexFile);
+            metrics.cache(af.getArtifactId(), false);
+            // Keep the quick up-to-date check working if nothing was written
+            moduleDir.setLastModified(System.currentTimeMillis());
 
+            if (ze.isChanged()) {
                 project.getProperties().setProperty("qooxdoo.application.dependency.updated", "true");
-
-            } catch (NoSuchArchiverException | IOException e) {
-                throw new MojoExecutionException("Failed to unpack qooxdoo module: " + af, e);
             }
+
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to unpack qooxdoo module: " + af, e);
         }
     }
 
@@ -109,33 +425,46 @@ public class ModulesUnpackMojo extends AbstractQooxdooMojo {
         boolean sdkReady = this.checkSdk(false);
         if (sdkReady) {
             getLog().info("The qooxdoo sdk \'" + QOOXDOO_SDK_DIRECTORY + "\' in \'" + this.modulesCacheDirectory.getAbsolutePath() + "\' is up to date");
+            metrics.cache(QOOXDOO_SDK_DIRECTORY, true);
             return;
         }
+        metrics.cache(QOOXDOO_SDK_DIRECTORY, false);
         Artifact qooxdooSdk = this.getQooxdooSdkArtifact();
         if (qooxdooSdk == null) {
             getLog().warn("Could not find org.qooxdoo:qooxdoo-sdk dependency ! Make sure to download and unpack the sdk into the 'sdkDirectory'.");
         } else {
             File sdkDir = new File(this.modulesCacheDirectory, QOOXDOO_SDK_DIRECTORY);
-            if (sdkDir.exists()) {
+            if (Files.isSymbolicLink(sdkDir.toPath())) {
+                // Never clean the sdk store through the link
+                try {
+                    Files.delete(sdkDir.toPath());
+                } catch (IOException e) {
+                    throw new MojoExecutionException("Could not remove qooxdoo-sdk link: " + sdkDir, e);
+                }
+            } else if (sdkDir.exists() && (sdkStore || !unpackDifferential)) {
                 getLog().info("Cleaning qooxdoo-sdk directory '" + sdkDir.getAbsolutePath() + "'");
                 try {
-                    FileUtils.cleanDirectory(sdkDir);
+                    if (sdkStore) {
+                        FileUtils.deleteDirectory(sdkDir);
+                    } else {
+                        FileUtils.cleanDirectory(sdkDir);
+                    }
                 } catch (Exception e) {
                     getLog().warn("Could not clean qooxdoo-sdk directory:" + e.getMessage());
                 }
             }
-            getLog().info("Unpacking qooxdoo-sdk dependency [" + qooxdooSdk.toString() + "]");
-            File jarFile = qooxdooSdk.getFile();
-            try {
-                UnArchiver unArchiver = archiverManager.getUnArchiver(jarFile);
-                this.modulesCacheDirectory.mkdirs();
-                unArchiver.setOverwrite(true);
-                unArchiver.setSourceFile(jarFile);
-                unArchiver.extract(QOOXDOO_SDK_DIRECTORY, this.modulesCacheDirectory);
-            } catch (NoSuchArchiverException e) {
-                throw new MojoExecutionException("Unknown archiver type", e);
-            } catch (Exception ex) {
-                throw new MojoExecutionException("Error unpacking file: " + jarFile + "to: " + this.modulesCacheDirectory, ex);
+            if (sdkStore) {
+                linkSdk(installSdk(qooxdooSdk), sdkDir);
+            } else {
+                getLog().info("Unpacking qooxdoo-sdk dependency [" + qooxdooSdk.toString() + "]");
+                File jarFile = qooxdooSdk.getFile();
+                try {
+                    this.modulesCacheDirectory.mkdirs();
+                    unzip(jarFile, QOOXDOO_SDK_DIRECTORY + "/", this.modulesCacheDirectory,
+                          unpackDifferential ? getUnpackIndexFile(QOOXDOO_SDK_DIRECTORY) : null);
+                } catch (Exception ex) {
+                    throw new MojoExecutionException("Error unpacking file: " + jarFile + "to: " + this.modulesCacheDirectory, ex);
+                }
             }
         }
         if (!this.checkSdk(true)) {
@@ -143,6 +472,155 @@ public class ModulesUnpackMojo extends AbstractQooxdooMojo {
         }
     }
 
+    /**
+     * Install the sdk into the machine-wide sdk store, if not installed yet.
+     * The sdk is unpacked into a staging directory and moved into the store
+     * by an atomic rename, so the store never contains partially unpacked sdk.
+     *
+     * @return Sdk directory in the store
+     */
+    File installSdk(Artifact qooxdooSdk) throws MojoExecutionException {
+        String version = qooxdooSdk.getVersion();
+        File root = sdkStoreDirectory;
+        if (root == null) {
+            root = new File(localRepository.getBasedir(), ".cache/qooxdoo/sdk");
+        }
+        File storeDir = new File(root, version);
+        if (isSdkInstalled(storeDir, version)) {
+            metrics.cache("sdk-store", true);
+            return storeDir;
+        }
+        root.mkdirs();
+        try {
+            CacheLock lock = CacheLock.acquire(storeDir, getLog());
+            try {
+                if (isSdkInstalled(storeDir, version)) {
+                    // Installed by a concurrent build
+                    metrics.cache("sdk-store", true);
+                    return storeDir;
+                }
+                metrics.cache("sdk-store", false);
+                if (storeDir.exists()) {
+                    getLog().warn("Removing broken qooxdoo sdk installation: " + storeDir);
+                    FileUtils.deleteDirectory(storeDir);
+                }
+                File jarFile = qooxdooSdk.getFile();
+                File staging = Files.createTempDirectory(root.toPath(), ".staging-").toFile();
+                try {
+                    getLog().info("Installing qooxdoo-sdk dependency [" + qooxdooSdk + "] into: " + storeDir);
+                    unzip(jarFile, QOOXDOO_SDK_DIRECTORY + "/", staging, null);
+                    Files.move(new File(staging, QOOXDOO_SDK_DIRECTORY).toPath(), storeDir.toPath(),
+                               StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    FileUtils.deleteDirectory(staging);
+                }
+            } finally {
+                lock.close();
+            }
+        } catch (Exception e) {
+            throw new MojoExecutionException("Failed to install the qooxdoo sdk into: " + storeDir, e);
+        }
+        return storeDir;
+    }
+
+    private boolean isSdkInstalled(File storeDir, String version) {
+        File versionFile = new File(storeDir, "version.txt");
+        if (!versionFile.isFile()) {
+            return false;
+        }
+        try {
+            return version.equals(FileUtils.fileRead(versionFile, this.encoding).trim());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Link the sdk from the store into the project: a symbolic link if supported,
+     * a tree of hard links otherwise, a copy as the last resort.
+     */
+    void linkSdk(File storeDir, File sdkDir) throws MojoExecutionException {
+        this.modulesCacheDirectory.mkdirs();
+        try {
+            Files.createSymbolicLink(sdkDir.toPath(), storeDir.toPath());
+            getLog().info("Linked qooxdoo sdk: " + sdkDir + " -> " + storeDir);
+            metrics.count("sdkSymlinks", 1);
+            return;
+        } catch (IOException | UnsupportedOperationException e) {
+            getLog().debug("Symbolic link is not supported: " + e);
+        }
+        final Path source = storeDir.toPath();
+        final Path target = sdkDir.toPath();
+        final boolean[] hardlinks = {true};
+        final long[] counts = new long[2];
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Path dst = target.resolve(source.relativize(file).toString());
+                    if (hardlinks[0]) {
+                        try {
+                            Files.createLink(dst, file);
+                            ++counts[0];
+                            return FileVisitResult.CONTINUE;
+                        } catch (IOException | UnsupportedOperationException e) {
+                            hardlinks[0] = false;
+                        }
+                    }
+                    Files.copy(file, dst, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                    ++counts[1];
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to link the qooxdoo sdk: " + storeDir + " into: " + sdkDir, e);
+        }
+        getLog().info("Linked qooxdoo sdk: " + sdkDir + " from: " + storeDir
+                      + ", hard links: " + counts[0] + ", copied files: " + counts[1]);
+        metrics.count("sdkHardlinks", counts[0]);
+        metrics.addFilesTouched(counts[0] + counts[1]);
+    }
+
+
+    /**
+     * Extract the archive by the parallel extractor
+     * and record the extracted bytes and files into the execution metrics.
+     *
+     * @param jarFile Archive to extract
+     * @param prefix  Extracted path prefix, null for the whole archive
+     * @param destDir   Target directory
+     * @param indexFile Index of the differential extraction, null for the full extraction
+     */
+    private ZipExtractor unzip(File jarFile, String prefix, File destDir, File indexFile) throws IOException {
+        long starts = System.currentTimeMillis();
+        ZipExtractor ze = new ZipExtractor(jarFile, destDir).setPrefix(prefix).setIndex(indexFile);
+        if (unpackThreads > 0) {
+            ze.setThreads(unpackThreads);
+        }
+        ze.extract();
+        getLog().info("Extracted " + ze.getFiles() + " files (" + (ze.getBytes() >> 10) + " KB)"
+                      + (indexFile != null ? ", unchanged: " + ze.getSkipped() + ", deleted: " + ze.getDeleted() : "")
+                      + " in " + (System.currentTimeMillis() - starts) + " ms");
+        metrics.addBytesRead(jarFile.length());
+        metrics.addBytesWritten(ze.getBytes());
+        metrics.addFilesTouched(ze.getFiles() + ze.getDeleted());
+        metrics.count("unchangedFiles", ze.getSkipped());
+        return ze;
+    }
+
+    /**
+     * Index of the differential extraction of the specified archive
+     */
+    private File getUnpackIndexFile(String name) {
+        return new File(this.modulesCacheDirectory, "." + name + ".unpack-index");
+    }
+
 
     boolean checkSdk(boolean verbose) {
         // Check that the directory exists
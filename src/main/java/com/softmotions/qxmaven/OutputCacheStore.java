@@ -0,0 +1,36 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Store of the cached generator outputs.
+ * An entry is a set of files relative to the application target keyed
+ * by the fingerprint of the generator inputs. Implementations must be safe
+ * for concurrent builds sharing the store: an entry is either restored
+ * completely or not found.
+ */
+public interface OutputCacheStore {
+
+    /**
+     * True if the store has the entry. The entry may still be evicted
+     * by a concurrent build before it is restored.
+     */
+    boolean contains(String key);
+
+    /**
+     * Restore the entry files into the target directory.
+     *
+     * @return Number of the restored files, {@code -1} if there is no such entry
+     */
+    int restore(String key, File targetDir) throws IOException;
+
+    /**
+     * Store the files of the source directory as the entry.
+     * An existing entry is kept as is.
+     *
+     * @param files Paths of the files relative to the source directory
+     */
+    void store(String key, File sourceDir, Collection<String> files) throws IOException;
+}
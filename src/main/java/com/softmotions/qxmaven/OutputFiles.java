@@ -0,0 +1,119 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Writing of the generated files: the file is written only if its content differs,
+ * so its timestamp is kept and the file system watchers (IDE, development servers,
+ * the generator cache) see no change. The content is written to a temporary file
+ * next to the target and moved over it, readers never see a partially written file.
+ */
+public final class OutputFiles {
+
+    private OutputFiles() {
+    }
+
+    /**
+     * Write the data into the file if the file content differs.
+     *
+     * @return True if the file was written
+     */
+    public static boolean writeIfChanged(File file, byte[] data) throws IOException {
+        if (hasContent(file, data)) {
+            return false;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        Path tmp = Files.createTempFile(parent != null ? parent.toPath() : null, "." + file.getName(), ".tmp");
+        try {
+            Files.write(tmp, data);
+            move(tmp, file.toPath());
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return true;
+    }
+
+    /**
+     * Move the file over the target if their contents differ, otherwise delete the file.
+     *
+     * @return True if the target was replaced
+     */
+    public static boolean moveIfChanged(File src, File dst) throws IOException {
+        if (hasSameContent(src, dst)) {
+            Files.delete(src.toPath());
+            return false;
+        }
+        File parent = dst.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        move(src.toPath(), dst.toPath());
+        return true;
+    }
+
+    /**
+     * True if the file exists and has exactly the specified content
+     */
+    public static boolean hasContent(File file, byte[] data) throws IOException {
+        if (!file.isFile() || file.length() != data.length) {
+            return false;
+        }
+        return Arrays.equals(data, Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * True if both files exist and have the same content
+     */
+    public static boolean hasSameContent(File f1, File f2) throws IOException {
+        if (!f1.isFile() || !f2.isFile() || f1.length() != f2.length()) {
+            return false;
+        }
+        byte[] b1 = new byte[64 * 1024];
+        byte[] b2 = new byte[64 * 1024];
+        try (InputStream is1 = Files.newInputStream(f1.toPath());
+             InputStream is2 = Files.newInputStream(f2.toPath())) {
+            while (true) {
+                int n1 = readFully(is1, b1);
+                int n2 = readFully(is2, b2);
+                if (n1 != n2) {
+                    return false;
+                }
+                if (n1 <= 0) {
+                    return true;
+                }
+                for (int i = 0; i < n1; ++i) {
+                    if (b1[i] != b2[i]) {
+                        return false;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int readFully(InputStream is, byte[] buf) throws IOException {
+        int off = 0;
+        int n;
+        while (off < buf.length && (n = is.read(buf, off, buf.length - off)) != -1) {
+            off += n;
+        }
+        return off;
+    }
+
+    private static void move(Path src, Path dst) throws IOException {
+        try {
+            Files.move(src, dst, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(src, dst, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -1,9 +1,35 @@
 package com.softmotions.qxmaven;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
 import org.apache.maven.archiver.MavenArchiveConfiguration;
 import org.apache.maven.archiver.MavenArchiver;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -12,6 +38,8 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProjectHelper;
 import org.codehaus.plexus.archiver.jar.JarArchiver;
+import org.codehaus.plexus.archiver.jar.ManifestException;
+import org.codehaus.plexus.util.DirectoryScanner;
 
 /**
  * Package compiled qxoodoo application
@@ -95,6 +123,76 @@ public class PackageJarMojo extends AbstractQooxdooMojo {
     @Component
     protected MavenProjectHelper projectHelper;
 
+    /**
+     * Add precompressed {@code .gz} variants of the text assets into the JAR,
+     * so they can be served with no compression on every request.
+     * A variant is kept only if it is smaller than the original file.
+     * <p/>
+     * parameter property="qooxdoo.package.gzip"
+     * default-value="false"
+     */
+    @Parameter(property = "qooxdoo.package.gzip",
+               defaultValue = "false")
+    protected boolean gzip;
+
+    /**
+     * Extensions of the files precompressed when {@code gzip} is on.
+     * <p/>
+     * parameter
+     */
+    @Parameter
+    protected String[] gzipExtensions = {"js", "css", "json", "html", "htm", "svg", "xml", "txt", "map"};
+
+    /**
+     * Minimal size in bytes of the precompressed files.
+     * <p/>
+     * parameter property="qooxdoo.package.gzipThreshold"
+     * default-value="1024"
+     */
+    @Parameter(property = "qooxdoo.package.gzipThreshold",
+               defaultValue = "1024")
+    protected long gzipThreshold;
+
+    /**
+     * Write the JAR by the parallel writer: entries are compressed on all cores,
+     * files of the {@code storedExtensions} are stored without compression.
+     * The archive manifest and the Maven descriptor are written in the same way
+     * as by the Maven archiver.
+     * <p/>
+     * parameter property="qooxdoo.package.parallel"
+     * default-value="false"
+     */
+    @Parameter(property = "qooxdoo.package.parallel",
+               defaultValue = "false")
+    protected boolean parallelPackaging;
+
+    /**
+     * Deflate level (1-9) of the compressed entries written by the parallel writer.
+     * <p/>
+     * parameter property="qooxdoo.package.compressionLevel"
+     * default-value="6"
+     */
+    @Parameter(property = "qooxdoo.package.compressionLevel",
+               defaultValue = "6")
+    protected int compressionLevel;
+
+    /**
+     * Extensions of the already compressed files stored without compression
+     * by the parallel writer. Defaults to the common image, font, audio, video
+     * and archive formats.
+     * <p/>
+     * parameter
+     */
+    @Parameter
+    protected String[] storedExtensions;
+
+    /**
+     * Index of the packaged files with their content hashes
+     */
+    protected FileIndex packageIndex;
+
+    private ParallelJarWriter jarWriter;
+
     /**
      * Return the specific output directory to serve as the root for the archive.
      */
@@ -139,6 +237,247 @@ public class PackageJarMojo extends AbstractQooxdooMojo {
         return new File(basedir, finalName + classifier + ".jar");
     }
 
+    /**
+     * Record the number of entries and the sizes of the created archive
+     * into the execution metrics.
+     */
+    protected void countArchive(File jarFile) throws IOException {
+        long entries = 0;
+        long size = 0;
+        long csize = 0;
+        try (ZipFile zf = new ZipFile(jarFile)) {
+            Enumeration<? extends ZipEntry> en = zf.entries();
+            while (en.hasMoreElements()) {
+                ZipEntry ze = en.nextElement();
+                ++entries;
+                size += Math.max(ze.getSize(), 0);
+                csize += Math.max(ze.getCompressedSize(), 0);
+            }
+        }
+        metrics.count("entries", entries);
+        metrics.count("size", size);
+        metrics.count("compressedSize", csize);
+        metrics.addFilesTouched(entries);
+        metrics.addBytesWritten(jarFile.length());
+    }
+
+    /**
+     * Files of the application target packaged into META-INF/qooxdoo
+     */
+    protected File[] getQooxdooMetaFiles() {
+        return new File[]{
+                new File(super.getApplicationTarget(), this.config),
+                new File(super.getApplicationTarget(), this.manifest),
+                new File(super.getApplicationTarget(), FingerprintAssetsMojo.MAPPING_FILE)
+        };
+    }
+
+    /**
+     * Inputs: the packaged files, the project POM, the manifest entries
+     * and the packaging parameters. Output: the JAR file.
+     */
+    @Override
+    protected void declareExecution(ExecutionState state) throws MojoExecutionException {
+        File jarFile = getJarFile(jarOutputDirectory, jarFinalName, getClassifier());
+        state.addInput(getRootDirectory())
+             .addInputs(Arrays.asList(getQooxdooMetaFiles()))
+             .addInput(project.getFile())
+             .addParameter("artifact", project.getId())
+             .addParameter("prefix", this.project.getArtifactId() + "/" + this.namespace + "/")
+             .addParameter("job", this.buildJob)
+             .addParameter("sdkVersion", getSdkVersion())
+             .addParameter("includes", Arrays.toString(getPackageIncludes()))
+             .addParameter("excludes", Arrays.toString(getPackageExcludes()))
+             .addParameter("manifestEntries", new TreeMap<>(archive.getManifestEntries()))
+             .addParameter("addMavenDescriptor", archive.isAddMavenDescriptor())
+             .addParameter("compress", archive.isCompress())
+             .addParameter("gzip", gzip ? Arrays.toString(gzipExtensions) + gzipThreshold : "")
+             .addParameter("parallel", parallelPackaging ? compressionLevel + Arrays.toString(storedExtensions) : "")
+             .addOutput(jarFile);
+    }
+
+    @Override
+    protected void onSkipped() throws MojoExecutionException {
+        File jarFile = getJarFile(jarOutputDirectory, jarFinalName, getClassifier());
+        if (jarFile.isFile()) {
+            getLog().info("Archive: " + jarFile.getPath() + " is up to date");
+            attachArchive(jarFile);
+        }
+    }
+
+    /**
+     * Compress the text assets of the JAR root in parallel at the maximum level.
+     * Compressed variants are cached by the content hash of the source file,
+     * so unchanged files are not recompressed. Unused cache entries are removed.
+     *
+     * @return Compressed variants keyed by the relative path of the source file
+     */
+    protected Map<String, File> createGzipVariants(File rootdir) throws IOException, MojoExecutionException {
+        final File cacheDir = new File(this.outputDirectory, ".gzip-cache");
+        cacheDir.mkdirs();
+        Set<String> exts = new HashSet<>();
+        for (String ext : gzipExtensions) {
+            exts.add(ext.toLowerCase());
+        }
+        DirectoryScanner ds = new DirectoryScanner();
+        ds.setBasedir(rootdir);
+        ds.setIncludes(getPackageIncludes());
+        ds.setExcludes(getPackageExcludes());
+        ds.scan();
+        final Map<String, File> variants = new TreeMap<>();
+        final Set<String> used = new HashSet<>();
+        final AtomicLong compressed = new AtomicLong();
+        final AtomicLong saved = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            Map<String, Future<File>> futures = new TreeMap<>();
+            for (final String rel : ds.getIncludedFiles()) {
+                final File f = new File(rootdir, rel);
+                String name = f.getName();
+                int idx = name.lastIndexOf('.');
+                if (idx == -1 || !exts.contains(name.substring(idx + 1).toLowerCase()) || f.length() < gzipThreshold) {
+                    continue;
+                }
+                FileIndex.Entry ie = (packageIndex != null) ? packageIndex.getEntries().get(f.getAbsolutePath()) : null;
+                final String hash = (ie != null && ie.size == f.length())
+                                    ? ie.hash : FileIndex.hash(f.toPath(), f.length());
+                used.add(hash);
+                futures.put(rel, pool.submit(new Callable<File>() {
+                    @Override
+                    public File call() throws Exception {
+                        File gz = new File(cacheDir, hash + ".gz");
+                        File none = new File(cacheDir, hash + ".none");
+                        if (none.isFile()) {
+                            return null;
+                        }
+                        if (!gz.isFile()) {
+                            if (!gzipFile(f, gz)) {
+                                none.createNewFile();
+                                return null;
+                            }
+                            compressed.incrementAndGet();
+                        }
+                        saved.addAndGet(f.length() - gz.length());
+                        return gz;
+                    }
+                }));
+            }
+            for (Map.Entry<String, Future<File>> e : futures.entrySet()) {
+                File gz = e.getValue().get();
+                if (gz != null) {
+                    variants.put(e.getKey(), gz);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Failed to compress qooxdoo assets", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        File[] cached = cacheDir.listFiles();
+        if (cached != null) {
+            for (File f : cached) {
+                String name = f.getName();
+                int idx = name.lastIndexOf('.');
+                if (idx == -1 || !used.contains(name.substring(0, idx))) {
+                    f.delete();
+                }
+            }
+        }
+        getLog().info("Gzip variants: " + variants.size() + " (" + compressed.get() + " compressed, "
+                      + (variants.size() - compressed.get()) + " cached), saved " + (saved.get() >> 10) + " KB");
+        metrics.count("gzipVariants", variants.size());
+        metrics.count("gzipCompressed", compressed.get());
+        return variants;
+    }
+
+    /**
+     * Compress the file at the maximum level.
+     *
+     * @return False if the compressed file is not smaller than the source
+     */
+    private static boolean gzipFile(File src, File dst) throws IOException {
+        File tmp = new File(dst.getPath() + ".tmp" + Thread.currentThread().getId());
+        GzipParameters params = new GzipParameters();
+        params.setCompressionLevel(Deflater.BEST_COMPRESSION);
+        try (OutputStream os = new GzipCompressorOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024), params)) {
+            Files.copy(src.toPath(), os);
+        }
+        if (tmp.length() >= src.length()) {
+            tmp.delete();
+            return false;
+        }
+        Files.move(tmp.toPath(), dst.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    /**
+     * Create the Maven archiver of the JAR file and prepare the parallel writer if it is used.
+     */
+    protected MavenArchiver createArchiver(File jarFile) {
+        MavenArchiver ma = new MavenArchiver();
+        ma.setArchiver(jarArchiver);
+        ma.setOutputFile(jarFile);
+        archive.setForced(false);
+        jarWriter = null;
+        if (parallelPackaging) {
+            jarWriter = new ParallelJarWriter(jarFile)
+                    .setLevel(compressionLevel)
+                    .setCompress(archive.isCompress());
+            if (storedExtensions != null) {
+                jarWriter.setStoredExtensions(Arrays.asList(storedExtensions));
+            }
+        }
+        return ma;
+    }
+
+    protected void addArchiveFile(File file, String name) {
+        if (jarWriter != null) {
+            jarWriter.addFile(file, name);
+        } else {
+            jarArchiver.addFile(file, name);
+        }
+    }
+
+    protected void addArchiveDirectory(File dir, String prefix) {
+        if (jarWriter != null) {
+            jarWriter.addDirectory(dir, prefix, getPackageIncludes(), getPackageExcludes());
+        } else {
+            jarArchiver.addDirectory(dir, prefix, getPackageIncludes(), getPackageExcludes());
+        }
+    }
+
+    /**
+     * Write the archive with the added files.
+     */
+    protected void writeArchive(MavenArchiver ma, File jarFile)
+            throws IOException, ManifestException, DependencyResolutionRequiredException {
+        if (jarWriter == null) {
+            ma.createArchive(session, project, archive);
+            return;
+        }
+        jarWriter.setManifest(ma.getManifest(session, project, archive));
+        if (archive.isAddMavenDescriptor()) {
+            String base = "META-INF/maven/" + project.getGroupId() + "/" + project.getArtifactId() + "/";
+            if (project.getFile() != null && project.getFile().isFile()) {
+                jarWriter.addFile(project.getFile(), base + "pom.xml");
+            }
+            String props = "groupId=" + project.getGroupId() + "\n"
+                           + "artifactId=" + project.getArtifactId() + "\n"
+                           + "version=" + project.getVersion() + "\n";
+            jarWriter.addBytes(props.getBytes(StandardCharsets.ISO_8859_1), base + "pom.properties");
+        }
+        long starts = System.currentTimeMillis();
+        jarWriter.write();
+        getLog().info("Parallel JAR writer: " + jarWriter.getStoredEntries() + " stored entries, "
+                      + (System.currentTimeMillis() - starts) + " ms");
+        metrics.count("storedEntries", jarWriter.getStoredEntries());
+        jarWriter = null;
+    }
+
     protected File createArchive() throws MojoExecutionException {
         File rootdir = getRootDirectory();
         if (!rootdir.isDirectory()) {
@@ -148,19 +487,11 @@ public class PackageJarMojo extends AbstractQooxdooMojo {
         File jarFile = getJarFile(jarOutputDirectory, jarFinalName, getClassifier());
         getLog().info("Creating qooxdoo JAR archive: " + jarFile.getPath() +
                       " from: " + rootdir.getPath());
-        MavenArchiver ma = new MavenArchiver();
-        ma.setArchiver(jarArchiver);
-        ma.setOutputFile(jarFile);
-        archive.setForced(false);
+        MavenArchiver ma = createArchiver(jarFile);
 
-        File[] qxmeta = {
-                new File(super.getApplicationTarget(), this.config),
-                new File(super.getApplicationTarget(), this.manifest)
-        };
-        for (File mf : qxmeta) {
+        for (File mf : getQooxdooMetaFiles()) {
             if (mf.exists()) {
-                ma.getArchiver()
-                        .addFile(mf, "META-INF/qooxdoo/" + mf.getName());
+                addArchiveFile(mf, "META-INF/qooxdoo/" + mf.getName());
             }
         }
         archive.addManifestEntry("Qooxdoo-App-Artifact", this.project.getArtifactId());
@@ -171,29 +502,43 @@ public class PackageJarMojo extends AbstractQooxdooMojo {
         if (getSdkVersion() != null) {
             archive.addManifestEntry("Qooxdoo-Sdk-Version", getSdkVersion());
         }
+        // Hashes of the packaged files are reused by the gzip variants
+        packageIndex = (executionState != null) ? executionState.getIndex() : null;
         try {
             if (!rootdir.isDirectory()) {
                 getLog().warn("Missing JAR root directory: " +
                               rootdir.getPath() + " empty JAR will be produced");
             } else {
-                ma.getArchiver()
-                        .addDirectory(rootdir, this.project.getArtifactId() + "/" + this.namespace + "/",
-                                      getPackageIncludes(), getPackageExcludes());
+                String prefix = this.project.getArtifactId() + "/" + this.namespace + "/";
+                addArchiveDirectory(rootdir, prefix);
+                if (gzip) {
+                    for (Map.Entry<String, File> e : createGzipVariants(rootdir).entrySet()) {
+                        addArchiveFile(e.getValue(), prefix + e.getKey() + ".gz");
+                    }
+                }
             }
-            ma.createArchive(session, project, archive);
+            writeArchive(ma, jarFile);
+            countArchive(jarFile);
             return jarFile;
         } catch (Exception e) {
             throw new MojoExecutionException("Error assembling JAR", e);
         }
     }
 
-    public void execute() throws MojoExecutionException, MojoFailureException {
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
         File jarFile = createArchive();
-        String classifier = getClassifier();
         if (jarFile == null) {
             return;
         }
-        getLog().info("Archive: " + jarFile.getPath() + " successfully created, classifier: " + classifier);
+        getLog().info("Archive: " + jarFile.getPath() + " successfully created, classifier: " + getClassifier());
+        attachArchive(jarFile);
+    }
+
+    /**
+     * Attach the archive to the project
+     */
+    protected void attachArchive(File jarFile) {
+        String classifier = getClassifier();
         if (classifier != null) {
             projectHelper.attachArtifact(project, getType(), classifier, jarFile);
             if (project.getArtifact().getFile() == null) {
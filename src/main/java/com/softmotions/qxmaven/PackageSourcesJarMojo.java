@@ -12,8 +12,11 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.codehaus.plexus.archiver.jar.ManifestException;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * @author Adamansky Anton (adamansky@gmail.com)
@@ -28,18 +31,62 @@ public class PackageSourcesJarMojo extends PackageJarMojo {
         return "sources";
     }
 
+    /**
+     * Publish the library manifest and source directories,
+     * so the reactor projects depending on the library
+     * can use them directly instead of unpacking the source JAR.
+     */
+    protected void publishLibrary() {
+        Map<String, Object> lib = new HashMap<>();
+        lib.put("manifest", new File(super.getApplicationTarget(), this.manifest));
+        lib.put("manifestName", this.manifest);
+        if (sourcesDirectory.exists()) {
+            lib.put("class", sourcesDirectory);
+        }
+        if (resourcesDirectory.exists()) {
+            lib.put("resource", resourcesDirectory);
+        }
+        if (translationDirectory.exists()) {
+            lib.put("translation", translationDirectory);
+        }
+        project.setContextValue(CONTEXT_LIBRARY, lib);
+    }
+
+    /**
+     * Inputs: the library sources, resources, translations and manifest,
+     * the project POM and the archive parameters. Output: the source JAR file.
+     */
+    @Override
+    protected void declareExecution(ExecutionState state) throws MojoExecutionException {
+        state.addInput(sourcesDirectory)
+             .addInput(resourcesDirectory)
+             .addInput(translationDirectory)
+             .addInput(new File(super.getApplicationTarget(), this.manifest))
+             .addInput(project.getFile())
+             .addParameter("artifact", project.getId())
+             .addParameter("job", this.buildJob)
+             .addParameter("sdkVersion", getSdkVersion())
+             .addParameter("includes", Arrays.toString(getPackageIncludes()))
+             .addParameter("excludes", Arrays.toString(getPackageExcludes()))
+             .addParameter("manifestEntries", new TreeMap<>(archive.getManifestEntries()))
+             .addParameter("addMavenDescriptor", archive.isAddMavenDescriptor())
+             .addParameter("compress", archive.isCompress())
+             .addParameter("parallel", parallelPackaging ? compressionLevel + Arrays.toString(storedExtensions) : "")
+             .addOutput(getJarFile(jarOutputDirectory, jarFinalName, getClassifier()));
+    }
+
+    @Override
+    protected void onSkipped() throws MojoExecutionException {
+        publishLibrary();
+        super.onSkipped();
+    }
+
     @Override
     protected File createArchive() throws MojoExecutionException {
+        publishLibrary();
         File jarFile = getJarFile(jarOutputDirectory, jarFinalName, getClassifier());
-        if (jarFile.isFile() && !isQooxdooSourcesChanged()) {
-            getLog().info("Source JAR archive: " + jarFile.getPath() + " is up to date ");
-            return jarFile;
-        }
         getLog().info("Creating source JAR archive: " + jarFile.getPath());
-        MavenArchiver ma = new MavenArchiver();
-        ma.setArchiver(jarArchiver);
-        ma.setOutputFile(jarFile);
-        archive.setForced(false);
+        MavenArchiver ma = createArchiver(jarFile);
 
         archive.addManifestEntry("Qooxdoo-App-Artifact", this.project.getArtifactId());
         archive.addManifestEntry("Qooxdoo-App-Namespace", this.getNamespace());
@@ -71,33 +118,28 @@ public class PackageSourcesJarMojo extends PackageJarMojo {
         }
 
         if (sourcesDirectory.exists()) {
-            jarArchiver.addDirectory(sourcesDirectory, "classes/",
-                                     getPackageIncludes(), getPackageExcludes());
+            addArchiveDirectory(sourcesDirectory, "classes/");
             mfProvides.put("class", "classes");
         }
 
         if (resourcesDirectory.exists()) {
-            jarArchiver.addDirectory(resourcesDirectory, "resources/",
-                                     getPackageIncludes(), getPackageExcludes());
+            addArchiveDirectory(resourcesDirectory, "resources/");
             mfProvides.put("resource", "resources");
         }
 
         if (translationDirectory.exists()) {
-            jarArchiver.addDirectory(translationDirectory, "translation/",
-                                     getPackageIncludes(), getPackageExcludes());
+            addArchiveDirectory(translationDirectory, "translation/");
             mfProvides.put("translation", "translation");
         }
         mfProvides.put("type", "library");
         try {
 
-            File temp = File.createTempFile("qx-maven", "tmp");
-            temp.deleteOnExit();
-            try (FileWriter fw = new FileWriter(temp)) {
-                mapper.writeValue(fw, mfNode);
-            }
-            jarArchiver.addFile(temp, manifest);
+            File libManifest = new File(super.getApplicationTarget(), ".library-" + manifest);
+            writeFile(libManifest, mapper.writeValueAsBytes(mfNode));
+            addArchiveFile(libManifest, manifest);
 
-            ma.createArchive(session, project, archive);
+            writeArchive(ma, jarFile);
+            countArchive(jarFile);
 
         } catch (IOException | ManifestException | DependencyResolutionRequiredException e) {
             throw new MojoExecutionException("Error assembling JAR", e);
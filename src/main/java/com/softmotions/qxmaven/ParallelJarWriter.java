@@ -0,0 +1,314 @@
+package com.softmotions.qxmaven;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.StreamCompressor;
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.codehaus.plexus.util.DirectoryScanner;
+
+/**
+ * JAR writer compressing the entries in parallel.
+ * <p/>
+ * The worker threads compress the entries in memory, the compressed entries
+ * are then appended to the target archive without recompression in the order they are added,
+ * so the same content always gives the same archive.
+ * Entries with the configured extensions (already compressed formats)
+ * are stored, the rest is deflated at the configured level.
+ */
+public final class ParallelJarWriter {
+
+    /**
+     * Extensions of the already compressed file formats
+     */
+    public static final String[] DEFAULT_STORED_EXTENSIONS = {
+            "png", "jpg", "jpeg", "gif", "webp", "ico",
+            "woff", "woff2", "eot",
+            "gz", "br", "zip", "jar",
+            "mp3", "mp4", "ogg", "webm"
+    };
+
+    private final File jarFile;
+
+    private final Map<String, Object> entries = new LinkedHashMap<>();
+
+    private final Set<String> storedExtensions = new HashSet<>();
+
+    private int level = Deflater.DEFAULT_COMPRESSION;
+
+    private boolean compress = true;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private Manifest manifest;
+
+    private int storedEntries;
+
+    public ParallelJarWriter(File jarFile) {
+        this.jarFile = jarFile;
+        Collections.addAll(storedExtensions, DEFAULT_STORED_EXTENSIONS);
+    }
+
+    /**
+     * Deflate level of the compressed entries
+     */
+    public ParallelJarWriter setLevel(int level) {
+        this.level = level;
+        return this;
+    }
+
+    /**
+     * Store all entries without compression if false
+     */
+    public ParallelJarWriter setCompress(boolean compress) {
+        this.compress = compress;
+        return this;
+    }
+
+    /**
+     * Extensions (without the leading dot) of the files to be stored without compression
+     */
+    public ParallelJarWriter setStoredExtensions(Collection<String> extensions) {
+        storedExtensions.clear();
+        for (String ext : extensions) {
+            storedExtensions.add(ext.toLowerCase());
+        }
+        return this;
+    }
+
+    public ParallelJarWriter setThreads(int threads) {
+        this.threads = Math.max(threads, 1);
+        return this;
+    }
+
+    public ParallelJarWriter setManifest(Manifest manifest) {
+        this.manifest = manifest;
+        return this;
+    }
+
+    /**
+     * Add the file. The first entry added with the given name wins.
+     */
+    public ParallelJarWriter addFile(File file, String name) {
+        if (!entries.containsKey(name)) {
+            entries.put(name, file);
+        }
+        return this;
+    }
+
+    /**
+     * Add the in-memory data. The first entry added with the given name wins.
+     */
+    public ParallelJarWriter addBytes(byte[] data, String name) {
+        if (!entries.containsKey(name)) {
+            entries.put(name, data);
+        }
+        return this;
+    }
+
+    /**
+     * Add the directory files matched by the given patterns.
+     *
+     * @param prefix Path prefix of the entries, ends with a slash
+     */
+    public ParallelJarWriter addDirectory(File dir, String prefix, String[] includes, String[] excludes) {
+        DirectoryScanner ds = new DirectoryScanner();
+        ds.setBasedir(dir);
+        ds.setIncludes(includes);
+        ds.setExcludes(excludes);
+        ds.addDefaultExcludes();
+        ds.scan();
+        for (String rel : ds.getIncludedFiles()) {
+            addFile(new File(dir, rel), prefix + rel.replace(File.separatorChar, '/'));
+        }
+        return this;
+    }
+
+    /**
+     * Number of the stored (not compressed) entries of the written archive
+     */
+    public int getStoredEntries() {
+        return storedEntries;
+    }
+
+    /**
+     * Write the archive. The target file is replaced only if the archive is written successfully.
+     */
+    public void write() throws IOException {
+        File tmp = new File(jarFile.getPath() + ".tmp");
+        Set<String> dirs = new TreeSet<>();
+        for (String name : entries.keySet()) {
+            for (int idx = name.indexOf('/'); idx != -1; idx = name.indexOf('/', idx + 1)) {
+                dirs.add(name.substring(0, idx + 1));
+            }
+        }
+        storedEntries = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(tmp)) {
+                zos.setUseZip64(Zip64Mode.AsNeeded);
+                // Manifest goes first as required by JarInputStream
+                writeDirectory(zos, "META-INF/");
+                if (manifest != null) {
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    manifest.write(bos);
+                    ZipArchiveEntry me = new ZipArchiveEntry(JarFile.MANIFEST_NAME);
+                    me.setMethod(ZipEntry.DEFLATED);
+                    zos.putArchiveEntry(me);
+                    zos.write(bos.toByteArray());
+                    zos.closeArchiveEntry();
+                }
+                for (String dir : dirs) {
+                    if (!"META-INF/".equals(dir)) {
+                        writeDirectory(zos, dir);
+                    }
+                }
+                // Compressed entries are appended in the order they are added,
+                // the number of the entries kept in memory is limited
+                Deque<Future<RawEntry>> pending = new ArrayDeque<>();
+                int window = threads * 4;
+                for (Map.Entry<String, Object> e : entries.entrySet()) {
+                    if (manifest != null && JarFile.MANIFEST_NAME.equalsIgnoreCase(e.getKey())) {
+                        continue;
+                    }
+                    final ZipArchiveEntry ze = new ZipArchiveEntry(e.getKey());
+                    final Object src = e.getValue();
+                    ze.setMethod(isStored(e.getKey()) ? ZipEntry.STORED : ZipEntry.DEFLATED);
+                    if (ze.getMethod() == ZipEntry.STORED) {
+                        ++storedEntries;
+                    }
+                    if (src instanceof File) {
+                        ze.setTime(((File) src).lastModified());
+                    }
+                    pending.add(pool.submit(new Callable<RawEntry>() {
+                        @Override
+                        public RawEntry call() throws Exception {
+                            return compress(ze, src);
+                        }
+                    }));
+                    if (pending.size() >= window) {
+                        pending.poll().get().writeTo(zos);
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    pending.poll().get().writeTo(zos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing: " + jarFile, e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Failed to write: " + jarFile, cause);
+            } finally {
+                pool.shutdownNow();
+            }
+            Files.move(tmp.toPath(), jarFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /**
+     * Compress the entry data in memory
+     */
+    private RawEntry compress(ZipArchiveEntry ze, Object src) throws IOException {
+        MemoryBackingStore store = new MemoryBackingStore();
+        try (InputStream is = (src instanceof byte[]) ? new ByteArrayInputStream((byte[]) src) : new FileInputStream((File) src);
+             StreamCompressor sc = StreamCompressor.create(level, store)) {
+            sc.deflate(is, ze.getMethod());
+            ze.setCrc(sc.getCrc32());
+            ze.setSize(sc.getBytesRead());
+            ze.setCompressedSize(sc.getBytesWrittenForLastEntry());
+        }
+        return new RawEntry(ze, store.bos.toByteArray());
+    }
+
+    private boolean isStored(String name) {
+        if (!compress) {
+            return true;
+        }
+        int idx = name.lastIndexOf('.');
+        return idx != -1 && idx > name.lastIndexOf('/') && storedExtensions.contains(name.substring(idx + 1).toLowerCase());
+    }
+
+    private static void writeDirectory(ZipArchiveOutputStream zos, String name) throws IOException {
+        ZipArchiveEntry de = new ZipArchiveEntry(name);
+        de.setMethod(ZipEntry.STORED);
+        de.setSize(0);
+        de.setCrc(0);
+        zos.putArchiveEntry(de);
+        zos.closeArchiveEntry();
+    }
+
+    /**
+     * Compressed entry to be appended to the archive as is
+     */
+    private static final class RawEntry {
+
+        private final ZipArchiveEntry entry;
+
+        private final byte[] data;
+
+        private RawEntry(ZipArchiveEntry entry, byte[] data) {
+            this.entry = entry;
+            this.data = data;
+        }
+
+        private void writeTo(ZipArchiveOutputStream zos) throws IOException {
+            zos.addRawArchiveEntry(entry, new ByteArrayInputStream(data));
+        }
+    }
+
+    private static final class MemoryBackingStore implements ScatterGatherBackingStore {
+
+        private final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(bos.toByteArray());
+        }
+
+        @Override
+        public void writeOut(byte[] data, int offset, int length) {
+            bos.write(data, offset, length);
+        }
+
+        @Override
+        public void closeForWriting() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Samples the resource usage of a child process tree from Linux {@code /proc}.
+ * <p/>
+ * The tree memory (sum of RSS) is sampled periodically by a daemon thread,
+ * the peak value is kept. CPU time and I/O counters are cumulative
+ * per process and are accounted relative to the values seen at the sampler start,
+ * so a long-lived process (persistent worker) reports the usage of the current job only.
+ * If a memory budget is set the root process is killed as soon as a sample exceeds it.
+ * On systems without {@code /proc} the sampler does nothing.
+ * <p/>
+ * The counters of a process include its reaped children (CPU time of the
+ * {@code cutime} and {@code cstime} fields, I/O of the {@code io} file), so a process
+ * of the tree is dropped once it disappears and its usage is counted by its parent.
+ * The persistent worker runs every job in a forked child, the worker is alive when the sampler
+ * is stopped and has reaped the child, so the final reading includes the whole job.
+ * Only the usage of a root process exiting before {@link #stop()} is under-reported,
+ * by up to one sampling interval.
+ */
+public final class ProcessSampler {
+
+    private static final File PROC = new File("/proc");
+
+    /**
+     * Kernel USER_HZ, 100 on all mainstream Linux architectures
+     */
+    private static final long CLOCK_TICKS = 100;
+
+    private final int pid;
+
+    /**
+     * The children of the processes are listed by {@code /proc/<pid>/task/<tid>/children},
+     * otherwise all of {@code /proc} is scanned
+     */
+    private final boolean childrenFiles;
+
+    private final Process process;
+
+    private final long memoryBudget;
+
+    private volatile boolean budgetExceeded;
+
+    private final Thread thread;
+
+    private final long starts = System.currentTimeMillis();
+
+    private final Map<Integer, long[]> baseline = new HashMap<>();
+
+    private final Map<Integer, long[]> last = new HashMap<>();
+
+    private volatile boolean stopped;
+
+    private long peakRss;
+
+    private long elapsed;
+
+    /**
+     * @param pid          Root process id
+     * @param interval     Sampling interval in milliseconds
+     * @param memoryBudget Max resident memory of the process tree in bytes, zero means no limit
+     */
+    private ProcessSampler(Process process, int pid, final long interval, long memoryBudget) {
+        this.process = process;
+        this.pid = pid;
+        this.childrenFiles = new File(PROC, pid + "/task/" + pid + "/children").isFile();
+        this.memoryBudget = memoryBudget;
+        synchronized (this) {
+            baseline.putAll(readTree());
+            last.putAll(baseline);
+        }
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!stopped) {
+                    try {
+                        Thread.sleep(interval);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    sample();
+                }
+            }
+        }, "qooxdoo-sampler-" + pid);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Start sampling of the process tree.
+     *
+     * @param process  Root process
+     * @param interval Sampling interval in milliseconds
+     * @return Started sampler or null if sampling is not supported
+     */
+    public static ProcessSampler start(Process process, long interval) {
+        return start(process, interval, 0);
+    }
+
+    /**
+     * Start sampling of the process tree and kill the root process
+     * if the tree memory exceeds the budget.
+     *
+     * @param process      Root process
+     * @param interval     Sampling interval in milliseconds
+     * @param memoryBudget Max resident memory of the process tree in bytes, zero means no limit
+     * @return Started sampler or null if sampling is not supported
+     */
+    public static ProcessSampler start(Process process, long interval, long memoryBudget) {
+        if (interval <= 0 || !new File(PROC, "self/stat").isFile()) {
+            return null;
+        }
+        int pid = getPid(process);
+        if (pid <= 0) {
+            return null;
+        }
+        return new ProcessSampler(process, pid, interval, memoryBudget);
+    }
+
+    /**
+     * True if the process was killed for exceeding the memory budget
+     */
+    public boolean isBudgetExceeded() {
+        return budgetExceeded;
+    }
+
+    /**
+     * Stop sampling and take the final sample.
+     * The counters are fixed after this call.
+     */
+    public ProcessSampler stop() {
+        if (!stopped) {
+            stopped = true;
+            thread.interrupt();
+            sample();
+            synchronized (this) {
+                elapsed = System.currentTimeMillis() - starts;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Peak resident memory of the process tree in bytes
+     */
+    public synchronized long getPeakRss() {
+        return peakRss;
+    }
+
+    /**
+     * CPU time (user + system) consumed by the process tree in milliseconds.
+     * The {@code /proc} ticks are converted assuming the kernel USER_HZ of 100
+     * (the value of all mainstream architectures, {@code getconf CLK_TCK} is not queried),
+     * the time is wrong on a kernel configured otherwise.
+     */
+    public synchronized long getCpuTime() {
+        return total(1) * 1000 / CLOCK_TICKS;
+    }
+
+    /**
+     * Bytes read by the process tree
+     */
+    public synchronized long getReadBytes() {
+        return total(2);
+    }
+
+    /**
+     * Bytes written by the process tree
+     */
+    public synchronized long getWriteBytes() {
+        return total(3);
+    }
+
+    /**
+     * Sampling wall time in milliseconds
+     */
+    public synchronized long getElapsedTime() {
+        return elapsed > 0 ? elapsed : System.currentTimeMillis() - starts;
+    }
+
+    /**
+     * Average CPU utilisation in percents of a single core
+     */
+    public long getCpuUtilisation() {
+        long wall = getElapsedTime();
+        return wall > 0 ? getCpuTime() * 100 / wall : 0;
+    }
+
+    public String toString() {
+        return String.format("peak RSS %d MB, CPU %.1f s (%d%% of one core), read %d MB, written %d MB",
+                             getPeakRss() >> 20, getCpuTime() / 1000.0, getCpuUtilisation(),
+                             getReadBytes() >> 20, getWriteBytes() >> 20);
+    }
+
+    private long total(int idx) {
+        long res = 0;
+        for (Map.Entry<Integer, long[]> e : last.entrySet()) {
+            long[] b = baseline.get(e.getKey());
+            res += e.getValue()[idx] - (b != null ? b[idx] : 0);
+        }
+        // The parents of the processes reaped since the start count their usage before the start too
+        for (Map.Entry<Integer, long[]> e : baseline.entrySet()) {
+            if (!last.containsKey(e.getKey())) {
+                res -= e.getValue()[idx];
+            }
+        }
+        return Math.max(res, 0);
+    }
+
+    private void sample() {
+        Map<Integer, long[]> tree = readTree();
+        if (tree.isEmpty()) {
+            // Root process exited, the last readings are kept
+            return;
+        }
+        long rss = 0;
+        synchronized (this) {
+            // Processes gone since the previous sample are counted by their parents
+            last.clear();
+            for (Map.Entry<Integer, long[]> e : tree.entrySet()) {
+                rss += e.getValue()[0];
+                last.put(e.getKey(), e.getValue());
+            }
+            if (rss > peakRss) {
+                peakRss = rss;
+            }
+        }
+        if (memoryBudget > 0 && rss > memoryBudget && !stopped && !budgetExceeded) {
+            budgetExceeded = true;
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * Read the counters of the root process and all of its descendants.
+     *
+     * @return Process id to {rss bytes, cpu ticks, read bytes, write bytes}
+     */
+    private Map<Integer, long[]> readTree() {
+        Map<Integer, List<Integer>> children = childrenFiles ? null : readAllChildren();
+        Map<Integer, long[]> res = new HashMap<>();
+        List<Integer> queue = new ArrayList<>();
+        queue.add(pid);
+        for (int i = 0; i < queue.size(); ++i) {
+            Integer p = queue.get(i);
+            long[] counters = readCounters(p);
+            if (counters != null) {
+                res.put(p, counters);
+            }
+            List<Integer> list = (children != null) ? children.get(p) : readChildren(p);
+            if (list != null) {
+                queue.addAll(list);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Read the children of the process from the {@code children} files of its threads
+     */
+    private static List<Integer> readChildren(Integer pid) {
+        List<Integer> res = new ArrayList<>();
+        String[] tids = new File(PROC, pid + "/task").list();
+        if (tids == null) {
+            return res;
+        }
+        for (String tid : tids) {
+            String s = readFile(pid + "/task/" + tid + "/children");
+            if (s == null) {
+                continue;
+            }
+            for (String child : s.trim().split("\\s+")) {
+                if (!child.isEmpty()) {
+                    res.add(Integer.valueOf(child));
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Scan all processes of {@code /proc}
+     *
+     * @return Parent process id to the child process ids
+     */
+    private static Map<Integer, List<Integer>> readAllChildren() {
+        Map<Integer, List<Integer>> children = new HashMap<>();
+        String[] names = PROC.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.isEmpty() || !Character.isDigit(name.charAt(0))) {
+                    continue;
+                }
+                String[] stat = readStat(name);
+                if (stat == null) {
+                    continue;
+                }
+                Integer ppid = Integer.valueOf(stat[1]);
+                List<Integer> list = children.get(ppid);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    children.put(ppid, list);
+                }
+                list.add(Integer.valueOf(name));
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Fields of {@code /proc/<pid>/stat} following the command name,
+     * the first element is the process state.
+     */
+    private static String[] readStat(String pid) {
+        String s = readFile(pid + "/stat");
+        if (s == null) {
+            return null;
+        }
+        int idx = s.lastIndexOf(')');
+        if (idx == -1) {
+            return null;
+        }
+        return s.substring(idx + 1).trim().split("\\s+");
+    }
+
+    private static long[] readCounters(Integer pid) {
+        String[] stat = readStat(String.valueOf(pid));
+        if (stat == null || stat.length < 22) {
+            return null;
+        }
+        long[] res = new long[4];
+        // utime + stime + cutime + cstime, fields 14-17 of the stat file
+        res[1] = Long.parseLong(stat[11]) + Long.parseLong(stat[12])
+                 + Long.parseLong(stat[13]) + Long.parseLong(stat[14]);
+        String status = readFile(pid + "/status");
+        if (status != null) {
+            for (String line : status.split("\n")) {
+                if (line.startsWith("VmRSS:")) {
+                    res[0] = Long.parseLong(line.substring(6).trim().split("\\s+")[0]) * 1024;
+                    break;
+                }
+            }
+        }
+        String io = readFile(pid + "/io");
+        if (io != null) {
+            for (String line : io.split("\n")) {
+                if (line.startsWith("rchar:")) {
+                    res[2] = Long.parseLong(line.substring(6).trim());
+                } else if (line.startsWith("wchar:")) {
+                    res[3] = Long.parseLong(line.substring(6).trim());
+                }
+            }
+        }
+        return res;
+    }
+
+    private static String readFile(String path) {
+        try {
+            return new String(Files.readAllBytes(Paths.get(PROC.getPath(), path)), StandardCharsets.US_ASCII);
+        } catch (IOException | RuntimeException e) {
+            // Process exited or the file is not accessible
+            return null;
+        }
+    }
+
+    /**
+     * Get the operating system id of the process.
+     *
+     * @return Process id or -1 if unknown
+     */
+    static int getPid(Process process) {
+        try {
+            // Java 9+
+            Method m = Process.class.getMethod("pid");
+            return ((Number) m.invoke(process)).intValue();
+        } catch (Exception ignored) {
+        }
+        try {
+            // java.lang.UNIXProcess of Java 8
+            Field f = process.getClass().getDeclaredField("pid");
+            f.setAccessible(true);
+            return f.getInt(process);
+        } catch (Exception ignored) {
+        }
+        return -1;
+    }
+}
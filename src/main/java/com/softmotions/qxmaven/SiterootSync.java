@@ -0,0 +1,389 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * Incremental synchronization of the application siteroot
+ * with its source directory.
+ * <p/>
+ * The state of every synchronized file (source size, mtime and hash,
+ * target size and mtime) is kept between builds. A file is copied
+ * only if it is new, its content changed or its target copy was modified,
+ * the source files are hashed only if their size or mtime changed,
+ * so touching a file does not cause its copying again once its hash is known.
+ * Filtered files are refreshed if their content or the filter properties changed.
+ * Only the files created by the synchronization are deleted when their sources are removed,
+ * other files of the target directory (the compiled application) are kept as is.
+ */
+public final class SiterootSync {
+
+    public static class Entry {
+
+        public long size;
+
+        public long mtime;
+
+        public String hash;
+
+        public long targetSize;
+
+        public long targetMtime;
+
+        public boolean filtered;
+    }
+
+    public static class State {
+
+        /**
+         * Hash of the filter properties the filtered files were produced with
+         */
+        public String filterHash;
+
+        public Map<String, Entry> files = new TreeMap<>();
+    }
+
+    private final File sourceDir;
+
+    private final File targetDir;
+
+    private final File stateFile;
+
+    private String[] filteredIncludes = new String[0];
+
+    private String filterHash;
+
+    private State state;
+
+    private final Map<String, Entry> current = new TreeMap<>();
+
+    private final List<String> toCopy = new ArrayList<>();
+
+    private final List<String> toFilter = new ArrayList<>();
+
+    private final List<String> orphans = new ArrayList<>();
+
+    private int unchanged;
+
+    private boolean stateModified;
+
+    private final AtomicLong copiedBytes = new AtomicLong();
+
+    /**
+     * @param sourceDir Source directory
+     * @param targetDir Target directory
+     * @param stateFile File keeping the synchronization state
+     */
+    public SiterootSync(File sourceDir, File targetDir, File stateFile) {
+        this.sourceDir = sourceDir;
+        this.targetDir = targetDir;
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Patterns of the files to be filtered relative to the source directory
+     */
+    public SiterootSync setFilteredIncludes(String... filteredIncludes) {
+        this.filteredIncludes = filteredIncludes;
+        return this;
+    }
+
+    /**
+     * Hash of the properties used to filter the files
+     */
+    public SiterootSync setFilterHash(String filterHash) {
+        this.filterHash = filterHash;
+        return this;
+    }
+
+    /**
+     * Compare the source directory with the target using the saved state
+     * and plan the files to be copied, filtered and deleted.
+     */
+    public void scan() throws IOException {
+        state = loadState(stateFile);
+        final Map<String, BasicFileAttributes> sources = new ConcurrentHashMap<>();
+        final Path root = sourceDir.toPath();
+        TreeScanner.scan(Collections.singletonList(sourceDir), new TreeScanner.Visitor() {
+            @Override
+            public boolean visit(Path path, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile()) {
+                    String rel = root.relativize(path).toString().replace(File.separatorChar, '/');
+                    if (!isExcluded(rel)) {
+                        sources.put(rel, attrs);
+                    }
+                }
+                return false;
+            }
+        });
+        boolean filterChanged = (filterHash == null || !filterHash.equals(state.filterHash));
+        for (Map.Entry<String, BasicFileAttributes> se : new TreeMap<>(sources).entrySet()) {
+            String rel = se.getKey();
+            BasicFileAttributes attrs = se.getValue();
+            boolean filtered = isFiltered(rel);
+            Entry e = state.files.get(rel);
+            Entry ne = new Entry();
+            ne.size = attrs.size();
+            ne.mtime = attrs.lastModifiedTime().toMillis();
+            ne.filtered = filtered;
+            current.put(rel, ne);
+            boolean changed = (e == null || e.filtered != filtered || !isTargetIntact(rel, e)
+                               || (filtered && filterChanged));
+            if (!changed) {
+                if (e.size != ne.size || e.mtime != ne.mtime) {
+                    ne.hash = FileIndex.hash(root.resolve(rel), ne.size);
+                    changed = (e.hash == null || !ne.hash.equals(e.hash));
+                    stateModified = true;
+                } else {
+                    ne.hash = e.hash;
+                }
+            }
+            if (!changed) {
+                ne.targetSize = e.targetSize;
+                ne.targetMtime = e.targetMtime;
+                ++unchanged;
+            } else if (filtered) {
+                toFilter.add(rel);
+            } else {
+                toCopy.add(rel);
+            }
+        }
+        for (String rel : state.files.keySet()) {
+            if (!current.containsKey(rel)) {
+                orphans.add(rel);
+            }
+        }
+    }
+
+    /**
+     * Files to be copied as is, relative to the source directory
+     */
+    public List<String> getToCopy() {
+        return toCopy;
+    }
+
+    /**
+     * Files to be filtered, relative to the source directory
+     */
+    public List<String> getToFilter() {
+        return toFilter;
+    }
+
+    /**
+     * Files removed from the source directory since the last synchronization
+     */
+    public List<String> getOrphans() {
+        return orphans;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public long getCopiedBytes() {
+        return copiedBytes.get();
+    }
+
+    /**
+     * True if the state of the unchanged files is to be saved: their timestamps changed
+     */
+    public boolean isStateModified() {
+        return stateModified;
+    }
+
+    /**
+     * True if nothing is to be done
+     */
+    public boolean isUpToDate() {
+        return toCopy.isEmpty() && toFilter.isEmpty() && orphans.isEmpty();
+    }
+
+    /**
+     * Copy the new and changed files keeping their timestamps.
+     *
+     * @param copier  Copier of the files
+     * @param threads Number of copying threads
+     */
+    public void copy(final FileCopier copier, int threads) throws IOException {
+        final Path sroot = sourceDir.toPath();
+        final Path troot = targetDir.toPath();
+        Set<Path> dirs = new LinkedHashSet<>();
+        for (String rel : toCopy) {
+            dirs.add(troot.resolve(rel).getParent());
+        }
+        for (Path d : dirs) {
+            Files.createDirectories(d);
+        }
+        threads = Math.min(threads, toCopy.size() / 16 + 1);
+        if (threads <= 1) {
+            for (String rel : toCopy) {
+                copier.copy(sroot.resolve(rel), troot.resolve(rel));
+                updated(rel);
+            }
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (final String rel : toCopy) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        copier.copy(sroot.resolve(rel), troot.resolve(rel));
+                        updated(rel);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to copy: " + sourceDir, cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Record the file created in the target directory.
+     * The source is not hashed here, the hash is computed when the file is found
+     * modified by its timestamp, so copying costs no more than reading the file once.
+     */
+    public void updated(String rel) throws IOException {
+        Entry e = current.get(rel);
+        File f = new File(targetDir, rel);
+        if (!e.filtered) {
+            copiedBytes.addAndGet(e.size);
+        }
+        e.targetSize = f.length();
+        e.targetMtime = f.lastModified();
+    }
+
+    /**
+     * Delete the target files of the removed sources and the directories left empty.
+     */
+    public void deleteOrphans() throws IOException {
+        Path root = targetDir.toPath();
+        for (String rel : orphans) {
+            Path p = root.resolve(rel);
+            Files.deleteIfExists(p);
+            for (Path dir = p.getParent(); dir != null && !dir.equals(root) && dir.startsWith(root); dir = dir.getParent()) {
+                String[] children = dir.toFile().list();
+                if (children == null || children.length > 0) {
+                    break;
+                }
+                Files.delete(dir);
+            }
+        }
+    }
+
+    /**
+     * Save the state of the synchronized files.
+     * Files planned but not recorded as updated are forgotten, so they are synchronized again next time.
+     *
+     * @return False if the saved state is the same as the existing file
+     */
+    public boolean save() throws IOException {
+        State ns = new State();
+        ns.filterHash = filterHash;
+        for (Map.Entry<String, Entry> e : current.entrySet()) {
+            if (e.getValue().targetMtime != 0) {
+                ns.files.put(e.getKey(), e.getValue());
+            }
+        }
+        return OutputFiles.writeIfChanged(stateFile, new ObjectMapper().writeValueAsBytes(ns));
+    }
+
+    /**
+     * Record the target files modified after the synchronization by a later goal,
+     * e.g. the references rewritten by the assets fingerprinting, so the next synchronization
+     * does not take them as modified and does not copy their sources again.
+     * They are refreshed as usual when their sources change.
+     *
+     * @param files Paths relative to the target directory, the files not synchronized are ignored
+     * @return False if the state is not changed
+     */
+    public static boolean recordTargets(File stateFile, File targetDir, Collection<String> files) throws IOException {
+        if (!stateFile.isFile()) {
+            return false;
+        }
+        State state = loadState(stateFile);
+        boolean modified = false;
+        for (String rel : files) {
+            Entry e = state.files.get(rel);
+            File f = new File(targetDir, rel);
+            if (e != null && f.isFile() && (e.targetSize != f.length() || e.targetMtime != f.lastModified())) {
+                e.targetSize = f.length();
+                e.targetMtime = f.lastModified();
+                modified = true;
+            }
+        }
+        return modified && OutputFiles.writeIfChanged(stateFile, new ObjectMapper().writeValueAsBytes(state));
+    }
+
+    private boolean isTargetIntact(String rel, Entry e) {
+        File f = new File(targetDir, rel);
+        return f.length() == e.targetSize && f.lastModified() == e.targetMtime && f.isFile();
+    }
+
+    private boolean isFiltered(String rel) {
+        for (String p : filteredIncludes) {
+            if (SelectorUtils.matchPath(p, rel)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isExcluded(String rel) {
+        for (String p : DirectoryScanner.DEFAULTEXCLUDES) {
+            if (SelectorUtils.matchPath(p, rel)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static State loadState(File file) {
+        if (file.isFile()) {
+            try {
+                State s = new ObjectMapper().readValue(file, State.class);
+                if (s.files != null) {
+                    return s;
+                }
+            } catch (IOException ignored) {
+            }
+        }
+        return new State();
+    }
+}
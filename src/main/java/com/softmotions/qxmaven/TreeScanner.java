@@ -0,0 +1,199 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Parallel fork-join file tree scanner.
+ * <p/>
+ * Every directory is listed by its own fork-join task and every entry
+ * costs a single {@code stat} call. Scanning stops on all workers
+ * as soon as the visitor asks for it.
+ */
+public final class TreeScanner {
+
+    private static final ForkJoinPool POOL =
+            new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+    public interface Visitor {
+
+        /**
+         * Visit a file or directory.
+         *
+         * @return {@code true} to stop the whole scan
+         */
+        boolean visit(Path path, BasicFileAttributes attrs) throws IOException;
+    }
+
+    private TreeScanner() {
+    }
+
+    /**
+     * Scan the specified roots in parallel.
+     * Missing roots are ignored, symbolic links are followed.
+     *
+     * @return {@code true} if the scan was stopped by the visitor
+     */
+    public static boolean scan(Collection<File> roots, Visitor visitor) throws IOException {
+        ScanContext ctx = new ScanContext(visitor);
+        List<ScanTask> tasks = new ArrayList<>();
+        for (File root : roots) {
+            if (root != null && root.exists()) {
+                tasks.add(new ScanTask(ctx, root.toPath(), true, null));
+            }
+        }
+        if (tasks.isEmpty()) {
+            return false;
+        }
+        try {
+            POOL.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return ctx.stop.get();
+    }
+
+    private static final class ScanContext {
+
+        final Visitor visitor;
+
+        final AtomicBoolean stop = new AtomicBoolean();
+
+        ScanContext(Visitor visitor) {
+            this.visitor = visitor;
+        }
+    }
+
+    /**
+     * File keys of a directory and its ancestors
+     */
+    private static final class Ancestor {
+
+        final Object key;
+
+        final Ancestor parent;
+
+        Ancestor(Object key, Ancestor parent) {
+            this.key = key;
+            this.parent = parent;
+        }
+
+        boolean contains(Object k) {
+            for (Ancestor a = this; a != null; a = a.parent) {
+                if (a.key.equals(k)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class ScanTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        final ScanContext ctx;
+
+        final Path path;
+
+        final boolean root;
+
+        /**
+         * The scanned directory and its ancestors, {@code null} for the roots
+         */
+        final Ancestor ancestors;
+
+        ScanTask(ScanContext ctx, Path path, boolean root, Ancestor ancestors) {
+            this.ctx = ctx;
+            this.path = path;
+            this.root = root;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected void compute() {
+            if (ctx.stop.get()) {
+                return;
+            }
+            try {
+                Ancestor chain = ancestors;
+                if (root) {
+                    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (!visit(path, attrs, chain) || !attrs.isDirectory()) {
+                        return;
+                    }
+                    chain = child(attrs, chain);
+                }
+                List<ScanTask> subtasks = new ArrayList<>();
+                try (DirectoryStream<Path> ds = Files.newDirectoryStream(path)) {
+                    for (Path p : ds) {
+                        if (ctx.stop.get()) {
+                            break;
+                        }
+                        BasicFileAttributes attrs;
+                        try {
+                            attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                        } catch (NoSuchFileException ignored) {
+                            continue;
+                        }
+                        if (visit(p, attrs, chain) && attrs.isDirectory()) {
+                            ScanTask t = new ScanTask(ctx, p, false, child(attrs, chain));
+                            t.fork();
+                            subtasks.add(t);
+                        }
+                    }
+                }
+                for (ScanTask t : subtasks) {
+                    t.join();
+                }
+            } catch (NoSuchFileException ignored) {
+            } catch (IOException e) {
+                ctx.stop.set(true);
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * @return {@code false} if the entry must not be descended into
+         */
+        private boolean visit(Path p, BasicFileAttributes attrs, Ancestor chain) throws IOException {
+            if (attrs.isDirectory() && chain != null) {
+                Object key = attrs.fileKey();
+                if (key != null && chain.contains(key)) {
+                    // Symlink cycle, the directory is its own ancestor
+                    return false;
+                }
+            }
+            if (ctx.visitor.visit(p, attrs)) {
+                ctx.stop.set(true);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Ancestors of the subdirectory with the given attributes
+         */
+        private static Ancestor child(BasicFileAttributes attrs, Ancestor chain) {
+            Object key = attrs.fileKey();
+            return (key != null) ? new Ancestor(key, chain) : chain;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Watch the qooxdoo sources, resources, translations and configuration
+ * and regenerate the application in the running JVM on every change.
+ * <p/>
+ * Only the steps affected by a change are re-run: configuration filtering,
+ * siteroot copy and the compile job. The goal is meant to be run
+ * after the usual build, for example: {@code mvn compile qooxdoo:watch}
+ * <p/>
+ * goal watch
+ */
+@Mojo(name = "watch")
+public class WatchMojo extends AbstractQooxdooMojo {
+
+    /**
+     * Quiet period in milliseconds. Bursts of file events are collected
+     * until no new events arrive during this period.
+     * <p/>
+     * parameter property="qooxdoo.watch.debounce"
+     * default-value="300"
+     */
+    @Parameter(property = "qooxdoo.watch.debounce",
+               defaultValue = "300")
+    protected long watchDebounce;
+
+    /**
+     * component
+     */
+    @Component
+    protected BuildPluginManager pluginManager;
+
+    private WatchService watcher;
+
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
+        List<File> roots = getQooxdooSourceRoots();
+        try (WatchService ws = FileSystems.getDefault().newWatchService()) {
+            watcher = ws;
+            for (File root : roots) {
+                if (root.isDirectory()) {
+                    register(root.toPath());
+                }
+            }
+            getLog().info("Watching qooxdoo sources, press Ctrl+C to stop...");
+            Set<Path> changed;
+            while (!(changed = waitChanges()).isEmpty()) {
+                regenerate(changed);
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to watch qooxdoo sources", e);
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            watcher = null;
+            keys.clear();
+        }
+    }
+
+    /**
+     * Block until a burst of file events is over.
+     *
+     * @return Changed paths
+     */
+    private Set<Path> waitChanges() throws InterruptedException, IOException {
+        Set<Path> changed = new LinkedHashSet<>();
+        WatchKey key = watcher.take();
+        do {
+            Path dir = keys.get(key);
+            for (WatchEvent<?> ev : key.pollEvents()) {
+                if (ev.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                    continue;
+                }
+                Path p = dir.resolve((Path) ev.context());
+                changed.add(p);
+                if (ev.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(p)) {
+                    register(p);
+                }
+            }
+            if (!key.reset()) {
+                keys.remove(key);
+            }
+            key = watcher.poll(watchDebounce, TimeUnit.MILLISECONDS);
+        } while (key != null);
+        return changed;
+    }
+
+    private void register(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watcher,
+                                            StandardWatchEventKinds.ENTRY_CREATE,
+                                            StandardWatchEventKinds.ENTRY_DELETE,
+                                            StandardWatchEventKinds.ENTRY_MODIFY);
+                keys.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void regenerate(Set<Path> changed) {
+        boolean configChanged = false;
+        boolean siterootChanged = false;
+        Path configDir = configuationDirectory.toPath();
+        Path siterootDir = new File(resourcesDirectory, "siteroot").toPath();
+        for (Path p : changed) {
+            getLog().debug("Changed: " + p);
+            if (p.startsWith(configDir)) {
+                configChanged = true;
+            } else if (p.startsWith(siterootDir)) {
+                siterootChanged = true;
+            }
+        }
+        getLog().info(changed.size() + " file(s) changed, regenerating...");
+        long starts = System.currentTimeMillis();
+        try {
+            if (configChanged) {
+                executeGoal("generate-config");
+            }
+            if (siterootChanged) {
+                executeGoal("generate-resources");
+            }
+            executeGoal("compile");
+            getLog().info("Regenerated in " + (System.currentTimeMillis() - starts) + " ms");
+        } catch (Exception e) {
+            getLog().error("Regeneration failed: " + e.getMessage(), e);
+        } finally {
+            // Unpacked modules are not tracked in watch mode
+            project.getProperties().remove("qooxdoo.application.dependency.updated");
+        }
+    }
+
+    private void executeGoal(String goal) throws Exception {
+        MojoDescriptor md = plugin.getMojo(goal);
+        if (md == null) {
+            throw new MojoExecutionException("Unknown goal: " + goal);
+        }
+        MojoExecution me = new MojoExecution(md, createConfiguration(md));
+        pluginManager.executeMojo(session, me);
+    }
+
+    /**
+     * Build the configuration of the goal in the same way as the lifecycle does:
+     * execution configuration over plugin configuration over parameter defaults.
+     */
+    private Xpp3Dom createConfiguration(MojoDescriptor md) {
+        Xpp3Dom cfg = null;
+        Plugin pp = project.getPlugin(plugin.getPluginLookupKey());
+        if (pp != null) {
+            if (pp.getConfiguration() != null) {
+                cfg = new Xpp3Dom((Xpp3Dom) pp.getConfiguration());
+            }
+            for (PluginExecution pe : pp.getExecutions()) {
+                if (pe.getGoals().contains(md.getGoal()) && pe.getConfiguration() != null) {
+                    cfg = Xpp3Dom.mergeXpp3Dom(new Xpp3Dom((Xpp3Dom) pe.getConfiguration()), cfg);
+                }
+            }
+        }
+        Xpp3Dom res = new Xpp3Dom("configuration");
+        PlexusConfiguration defaults = md.getMojoConfiguration();
+        for (PlexusConfiguration def : defaults.getChildren()) {
+            Xpp3Dom c = (cfg != null) ? cfg.getChild(def.getName()) : null;
+            res.addChild(c != null ? new Xpp3Dom(c) : toXpp3Dom(def));
+        }
+        return res;
+    }
+
+    private static Xpp3Dom toXpp3Dom(PlexusConfiguration pc) {
+        Xpp3Dom dom = new Xpp3Dom(pc.getName());
+        dom.setValue(pc.getValue(null));
+        for (String name : pc.getAttributeNames()) {
+            dom.setAttribute(name, pc.getAttribute(name, null));
+        }
+        for (PlexusConfiguration child : pc.getChildren()) {
+            dom.addChild(toXpp3Dom(child));
+        }
+        return dom;
+    }
+}
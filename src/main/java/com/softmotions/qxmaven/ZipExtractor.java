@@ -0,0 +1,363 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Multi-threaded ZIP archive extractor.
+ * <p/>
+ * The central directory is read once, the directory skeleton is created
+ * up front, then the file entries are inflated and written by a pool of workers,
+ * every worker reads the archive through its own {@link ZipFile}.
+ * Entry timestamps are preserved, entries escaping the target directory are rejected.
+ * <p/>
+ * In the differential mode (see {@link #setIndex(File)}) only the entries whose CRC32 or size
+ * differ from the existing files are written, unchanged files keep their timestamps,
+ * files which are no longer in the archive are deleted.
+ * Existing files are replaced by a rename, they are never written in place,
+ * so files hard linked from a shared store (see {@link ModulesUnpackMojo}) are left intact.
+ */
+public final class ZipExtractor {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File zip;
+
+    private final File destDir;
+
+    private String prefix;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final AtomicLong files = new AtomicLong();
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    private long deleted;
+
+    private File indexFile;
+
+    /**
+     * Known state of the extracted files: entry name to {crc, size, file mtime}
+     */
+    private Map<String, long[]> index;
+
+    private final Map<String, long[]> newIndex = new ConcurrentHashMap<>();
+
+    /**
+     * @param zip     Archive to extract
+     * @param destDir Target directory
+     */
+    public ZipExtractor(File zip, File destDir) {
+        this.zip = zip;
+        this.destDir = destDir;
+    }
+
+    /**
+     * Extract only the entries under the specified path of the archive.
+     * The path is kept in the extracted file names.
+     */
+    public ZipExtractor setPrefix(String prefix) {
+        this.prefix = prefix;
+        return this;
+    }
+
+    /**
+     * Number of extracting threads, the number of cores by default.
+     */
+    public ZipExtractor setThreads(int threads) {
+        this.threads = Math.max(threads, 1);
+        return this;
+    }
+
+    /**
+     * Extract differentially using the specified index of the previously extracted files.
+     * The index file is updated after the extraction.
+     */
+    public ZipExtractor setIndex(File indexFile) {
+        this.indexFile = indexFile;
+        return this;
+    }
+
+    /**
+     * Number of uncompressed bytes written
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Number of files written
+     */
+    public long getFiles() {
+        return files.get();
+    }
+
+    /**
+     * Number of unchanged files left as is in the differential mode
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Number of files deleted in the differential mode
+     */
+    public long getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * True if the extraction changed the target directory
+     */
+    public boolean isChanged() {
+        return files.get() > 0 || deleted > 0;
+    }
+
+    /**
+     * Extract the archive.
+     */
+    public void extract() throws IOException {
+        final File root = destDir.getCanonicalFile();
+        if (indexFile != null) {
+            index = loadIndex(indexFile);
+        }
+        final List<ZipEntry> entries = new ArrayList<>();
+        Set<File> dirs = new LinkedHashSet<>();
+        List<ZipEntry> dirEntries = new ArrayList<>();
+        try (ZipFile zf = new ZipFile(zip)) {
+            Enumeration<? extends ZipEntry> en = zf.entries();
+            while (en.hasMoreElements()) {
+                ZipEntry ze = en.nextElement();
+                if (prefix != null && !ze.getName().startsWith(prefix)) {
+                    continue;
+                }
+                File f = resolve(root, ze.getName());
+                if (ze.isDirectory()) {
+                    dirs.add(f);
+                    dirEntries.add(ze);
+                } else {
+                    dirs.add(f.getParentFile());
+                    entries.add(ze);
+                }
+            }
+        }
+        for (File d : dirs) {
+            if (!d.isDirectory() && !d.mkdirs() && !d.isDirectory()) {
+                throw new IOException("Failed to create directory: " + d);
+            }
+        }
+        // Largest entries first for the better balance of workers
+        Collections.sort(entries, new Comparator<ZipEntry>() {
+            @Override
+            public int compare(ZipEntry o1, ZipEntry o2) {
+                return Long.compare(o2.getSize(), o1.getSize());
+            }
+        });
+        int nthreads = Math.min(threads, Math.max(entries.size() / 16, 1));
+        final AtomicInteger next = new AtomicInteger();
+        if (nthreads == 1) {
+            extractEntries(root, entries, next);
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(nthreads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < nthreads; ++i) {
+                    futures.add(pool.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            extractEntries(root, entries, next);
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<?> f : futures) {
+                    f.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Extraction interrupted: " + zip, e);
+            } catch (ExecutionException e) {
+                next.set(entries.size());
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Failed to extract: " + zip, cause);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        if (indexFile != null) {
+            deleteRemoved(root);
+            saveIndex();
+        }
+        // Directory timestamps are set when all their files are written
+        for (ZipEntry ze : dirEntries) {
+            if (ze.getTime() != -1) {
+                resolve(root, ze.getName()).setLastModified(ze.getTime());
+            }
+        }
+    }
+
+    /**
+     * Delete the files which are no longer in the archive. Without the previous index
+     * all the files of the extracted tree not found in the archive are deleted.
+     */
+    private void deleteRemoved(File root) throws IOException {
+        if (index != null) {
+            for (String name : index.keySet()) {
+                if (!newIndex.containsKey(name) && resolve(root, name).delete()) {
+                    ++deleted;
+                }
+            }
+            return;
+        }
+        final Path rp = root.toPath();
+        Path base = (prefix != null) ? resolve(root, prefix).toPath() : rp;
+        if (!Files.isDirectory(base)) {
+            return;
+        }
+        final List<Path> orphans = new ArrayList<>();
+        final Path ip = indexFile.getAbsoluteFile().toPath();
+        Files.walkFileTree(base, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String name = rp.relativize(file).toString().replace(File.separatorChar, '/');
+                if (!newIndex.containsKey(name) && !file.equals(ip)) {
+                    orphans.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        for (Path p : orphans) {
+            Files.deleteIfExists(p);
+            ++deleted;
+        }
+    }
+
+    /**
+     * Check if the existing file has the same content as the archive entry.
+     * The file CRC32 is computed only if the file is not in the index
+     * or it was modified since the last extraction.
+     */
+    private boolean isUnchanged(ZipEntry ze, File f, byte[] buf) throws IOException {
+        if (ze.getCrc() == -1 || !f.isFile() || f.length() != ze.getSize()) {
+            return false;
+        }
+        long mtime = f.lastModified();
+        long[] known = (index != null) ? index.get(ze.getName()) : null;
+        if (known != null && known[1] == ze.getSize() && known[2] == mtime) {
+            return known[0] == ze.getCrc();
+        }
+        CRC32 crc = new CRC32();
+        try (InputStream is = new FileInputStream(f)) {
+            int n;
+            while ((n = is.read(buf)) != -1) {
+                crc.update(buf, 0, n);
+            }
+        }
+        return crc.getValue() == ze.getCrc();
+    }
+
+    private static Map<String, long[]> loadIndex(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return new ObjectMapper().readValue(file, new TypeReference<Map<String, long[]>>() {
+            });
+        } catch (IOException e) {
+            // Broken index, fall back to checksums of the existing files
+            return null;
+        }
+    }
+
+    private void saveIndex() throws IOException {
+        OutputFiles.writeIfChanged(indexFile, new ObjectMapper().writeValueAsBytes(new TreeMap<>(newIndex)));
+    }
+
+    private void extractEntries(File root, List<ZipEntry> entries, AtomicInteger next) throws IOException {
+        byte[] buf = new byte[BUFFER_SIZE];
+        try (ZipFile zf = new ZipFile(zip)) {
+            int i;
+            while ((i = next.getAndIncrement()) < entries.size()) {
+                ZipEntry ze = entries.get(i);
+                File f = resolve(root, ze.getName());
+                if (indexFile != null && isUnchanged(ze, f, buf)) {
+                    newIndex.put(ze.getName(), new long[]{ze.getCrc(), ze.getSize(), f.lastModified()});
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                // An existing file may be a hard link into a shared store:
+                // never write through it, replace the link instead
+                boolean replace = f.exists();
+                File out = replace ? new File(f.getParentFile(), "." + f.getName() + ".part") : f;
+                long size = 0;
+                try (InputStream is = zf.getInputStream(ze);
+                     OutputStream os = new FileOutputStream(out)) {
+                    int n;
+                    while ((n = is.read(buf)) != -1) {
+                        os.write(buf, 0, n);
+                        size += n;
+                    }
+                }
+                if (ze.getTime() != -1) {
+                    out.setLastModified(ze.getTime());
+                }
+                if (replace) {
+                    Files.move(out.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                if (indexFile != null) {
+                    newIndex.put(ze.getName(), new long[]{ze.getCrc(), size, f.lastModified()});
+                }
+                bytes.addAndGet(size);
+                files.incrementAndGet();
+            }
+        }
+    }
+
+    private static File resolve(File root, String name) throws IOException {
+        Path rp = root.toPath();
+        Path p = rp.resolve(name).normalize();
+        if (!p.startsWith(rp)) {
+            throw new IOException("Archive entry is outside of the target directory: " + name);
+        }
+        return p.toFile();
+    }
+}
@@ -0,0 +1,126 @@
+# -*- coding: utf-8 -*-
+"""
+Persistent python worker used by the qooxdoo-maven-plugin.
+
+Reads one JSON job request per line from stdin:
+
+    {"script": "/path/to/generator.py", "args": ["--config", "config.json", "build"]}
+
+The first request for a script imports the script modules into the worker
+without running its main block. Every job then runs in a forked child with
+a fresh __main__ namespace: the imported modules and the JIT state of the
+worker are reused, while the module state changed by a job dies with its child,
+so no state leaks between jobs. Without os.fork the job runs in the worker
+itself and the modules imported by the job are purged after it.
+When the job is finished a line
+
+    <SENTINEL> <exit code> <elapsed ms>
+
+is written to stdout.
+"""
+import json
+import os
+import sys
+import time
+import traceback
+
+SENTINEL = "\x1eQXWORKER-DONE"
+
+preloaded = set()
+
+
+def execute(script, args, name, keep_path=False):
+    """Run the script source in a fresh namespace, return the exit code."""
+    saved = (list(sys.argv), list(sys.path), os.getcwd(), sys.stdout, sys.stderr)
+    sys.argv = [script] + list(args)
+    sys.path.insert(0, os.path.dirname(script))
+    code = 0
+    try:
+        with open(script) as f:
+            source = f.read()
+        exec(compile(source, script, "exec"), {"__name__": name, "__file__": script})
+    except SystemExit as e:
+        if e.code is None:
+            code = 0
+        elif isinstance(e.code, int):
+            code = e.code
+        else:
+            sys.stderr.write("%s\n" % e.code)
+            code = 1
+    except BaseException:
+        traceback.print_exc()
+        code = 1
+    finally:
+        sys.argv, path, cwd, sys.stdout, sys.stderr = saved
+        if not keep_path:
+            sys.path[:] = path
+        os.chdir(cwd)
+    return code
+
+
+def preload(script):
+    """Import the script modules once, its main block is not run."""
+    if script in preloaded:
+        return
+    preloaded.add(script)
+    # The library paths added by the script are kept for the jobs
+    execute(script, [], "__qxworker_preload__", keep_path=True)
+
+
+def run_forked(script, args):
+    preload(script)
+    sys.stdout.flush()
+    sys.stderr.flush()
+    pid = os.fork()
+    if pid == 0:
+        code = 1
+        try:
+            code = execute(script, args, "__main__")
+        finally:
+            try:
+                sys.stdout.flush()
+                sys.stderr.flush()
+            finally:
+                os._exit(code & 0xff)
+    status = os.waitpid(pid, 0)[1]
+    if os.WIFEXITED(status):
+        return os.WEXITSTATUS(status)
+    return 128 + os.WTERMSIG(status)
+
+
+def run_inline(script, args):
+    modules = set(sys.modules)
+    try:
+        return execute(script, args, "__main__")
+    finally:
+        for name in list(sys.modules):
+            if name not in modules:
+                del sys.modules[name]
+
+
+def run(req):
+    script = req["script"]
+    args = req.get("args", [])
+    if hasattr(os, "fork"):
+        return run_forked(script, args)
+    return run_inline(script, args)
+
+
+def main():
+    out = sys.stdout
+    while True:
+        line = sys.stdin.readline()
+        if not line:
+            break
+        line = line.strip()
+        if not line:
+            continue
+        started = time.time()
+        code = run(json.loads(line))
+        sys.stderr.flush()
+        out.write("%s %d %d\n" % (SENTINEL, code, int((time.time() - started) * 1000)))
+        out.flush()
+
+
+if __name__ == "__main__":
+    main()
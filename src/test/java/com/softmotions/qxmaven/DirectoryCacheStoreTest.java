@@ -0,0 +1,67 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.softmotions.qxmaven.TestFiles.read;
+import static com.softmotions.qxmaven.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DirectoryCacheStoreTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testStoreAndRestore() throws Exception {
+        File source = tmp.newFolder("source");
+        write(new File(source, "build/script/app.js"), "app");
+        write(new File(source, "build/index.html"), "index");
+        write(new File(source, "other.txt"), "other");
+        DirectoryCacheStore store = new DirectoryCacheStore(tmp.newFolder("store"), 1024 * 1024);
+        assertFalse(store.contains("k1"));
+        assertEquals(-1, store.restore("k1", tmp.newFolder("none")));
+
+        store.store("k1", source, Arrays.asList("build/script/app.js", "build/index.html"));
+        assertTrue(store.contains("k1"));
+        File target = tmp.newFolder("target");
+        assertEquals(2, store.restore("k1", target));
+        assertEquals("app", read(new File(target, "build/script/app.js")));
+        assertEquals("index", read(new File(target, "build/index.html")));
+        assertFalse(new File(target, "other.txt").exists());
+        assertFalse(new File(target, DirectoryCacheStore.ENTRY_FILE).exists());
+
+        // An existing entry is kept as is
+        write(new File(source, "build/script/app.js"), "changed");
+        store.store("k1", source, Arrays.asList("build/script/app.js"));
+        File target2 = tmp.newFolder("target2");
+        assertEquals(2, store.restore("k1", target2));
+        assertEquals("app", read(new File(target2, "build/script/app.js")));
+    }
+
+    @Test
+    public void testLruEviction() throws Exception {
+        File source = tmp.newFolder("source");
+        write(new File(source, "a.js"), "0123456789");
+        File root = tmp.newFolder("store");
+        DirectoryCacheStore store = new DirectoryCacheStore(root, 25);
+        store.store("k1", source, Arrays.asList("a.js"));
+        store.store("k2", source, Arrays.asList("a.js"));
+        long now = System.currentTimeMillis();
+        new File(root, "k1/" + DirectoryCacheStore.ENTRY_FILE).setLastModified(now - 20000);
+        new File(root, "k2/" + DirectoryCacheStore.ENTRY_FILE).setLastModified(now - 30000);
+        // Restoring marks k2 as the most recently used
+        store.restore("k2", tmp.newFolder("target"));
+        store.store("k3", source, Arrays.asList("a.js"));
+        assertFalse(store.contains("k1"));
+        assertTrue(store.contains("k2"));
+        assertTrue(store.contains("k3"));
+        assertEquals(2, root.list().length);
+    }
+}
@@ -0,0 +1,120 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.softmotions.qxmaven.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ExecutionStateTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File stateDir;
+
+    private File inputs;
+
+    private File outputs;
+
+    @Before
+    public void setUp() throws Exception {
+        stateDir = tmp.newFolder("state");
+        inputs = tmp.newFolder("inputs");
+        outputs = tmp.newFolder("outputs");
+        write(new File(inputs, "a.js"), "a");
+        write(new File(inputs, "lib/b.js"), "b");
+        write(new File(outputs, "app.js"), "app");
+    }
+
+    @Test
+    public void testUpToDate() throws Exception {
+        assertEquals("no previous execution state", state("p").check());
+        execute("p");
+        assertNull(state("p").check());
+    }
+
+    @Test
+    public void testTouchedInputIsUpToDate() throws Exception {
+        execute("p");
+        File a = new File(inputs, "a.js");
+        a.setLastModified(a.lastModified() + 10000);
+        ExecutionState state = state("p");
+        assertNull(state.check());
+        assertEquals(1, state.getIndex().getHashedFiles());
+        assertNull(state("p").check());
+        assertEquals(0, state("p").getIndex().getHashedFiles());
+    }
+
+    @Test
+    public void testChangedInput() throws Exception {
+        execute("p");
+        write(new File(inputs, "lib/b.js"), "changed");
+        ExecutionState state = state("p");
+        assertEquals("1 input file(s) changed", state.check());
+        assertEquals(new File(inputs, "lib/b.js").getAbsolutePath(), state.getChangedInputs().get(0));
+    }
+
+    @Test
+    public void testAddedAndDeletedInputs() throws Exception {
+        execute("p");
+        write(new File(inputs, "c.js"), "c");
+        assertNotNull(state("p").check());
+        execute("p");
+        Files.delete(new File(inputs, "a.js").toPath());
+        assertEquals("1 input file(s) changed", state("p").check());
+    }
+
+    @Test
+    public void testChangedParameter() throws Exception {
+        execute("p");
+        assertEquals("parameters changed", state("q").check());
+    }
+
+    @Test
+    public void testChangedOutputs() throws Exception {
+        execute("p");
+        write(new File(outputs, "app.js"), "modified");
+        assertEquals("outputs changed", state("p").check());
+        execute("p");
+        Files.delete(new File(outputs, "app.js").toPath());
+        assertEquals("outputs changed", state("p").check());
+        execute("p");
+        File missing = new File(tmp.getRoot(), "missing");
+        ExecutionState state = state("p").addOutput(missing);
+        state.check();
+        state.save();
+        write(missing, "now exists");
+        assertEquals("outputs changed", state("p").addOutput(missing).check());
+    }
+
+    @Test
+    public void testInvalidatedState() throws Exception {
+        execute("p");
+        ExecutionState state = state("p");
+        assertNotNull(state.setChanged("forced").check());
+        state.invalidate();
+        assertEquals("no previous execution state", state("p").check());
+    }
+
+    private ExecutionState state(String param) {
+        return new ExecutionState(stateDir, "test")
+                .addInput(inputs)
+                .addParameter("param", param)
+                .addOutput(outputs);
+    }
+
+    private void execute(String param) throws IOException {
+        ExecutionState state = state(param);
+        state.check();
+        state.save();
+    }
+}
@@ -0,0 +1,82 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.softmotions.qxmaven.TestFiles.read;
+import static com.softmotions.qxmaven.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FingerprintAssetsMojoTest {
+
+    private static final Pattern SCRIPT_REF = Pattern.compile("script/app\\.[0-9a-f]+\\.js");
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File source;
+
+    private FingerprintAssetsMojo mojo;
+
+    @Before
+    public void setUp() throws Exception {
+        source = tmp.newFolder("source");
+        write(new File(source, "index.html"), "<script src=\"script/app.js\"></script>");
+        mojo = new FingerprintAssetsMojo();
+        mojo.outputDirectory = tmp.newFolder("qooxdoo");
+        mojo.setNamespace("app");
+        mojo.fingerprint = true;
+    }
+
+    @Test
+    public void testChangedScriptBetweenBuilds() throws Exception {
+        String first = build("qx.App = 1;");
+        assertEquals("qx.App = 1;", read(new File(mojo.getRootDirectory(), first)));
+
+        // The page is recorded by the synchronization, it is not copied again
+        String second = build("qx.App = 2;");
+        assertNotEquals(first, second);
+        assertFalse(new File(mojo.getRootDirectory(), first).exists());
+        assertEquals("qx.App = 2;", read(new File(mojo.getRootDirectory(), second)));
+
+        assertEquals(second, build("qx.App = 2;"));
+    }
+
+    /**
+     * Generate the script, synchronize the siteroot and fingerprint the assets
+     *
+     * @return Fingerprinted script referenced by the page
+     */
+    private String build(String script) throws Exception {
+        File rootdir = mojo.getRootDirectory();
+        write(new File(rootdir, "script/app.js"), script);
+        SiterootSync sync = new SiterootSync(source, rootdir, mojo.getSiterootSyncStateFile())
+                .setFilteredIncludes("**/*.html")
+                .setFilterHash("f1");
+        sync.scan();
+        sync.copy(new FileCopier(), 1);
+        for (String rel : sync.getToFilter()) {
+            Files.copy(new File(source, rel).toPath(), new File(rootdir, rel).toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+            sync.updated(rel);
+        }
+        sync.save();
+        mojo.fingerprintAssets(rootdir);
+
+        Matcher m = SCRIPT_REF.matcher(read(new File(rootdir, "index.html")));
+        assertTrue(m.find());
+        assertTrue(new File(rootdir, m.group()).isFile());
+        return m.group();
+    }
+}
@@ -0,0 +1,134 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.softmotions.qxmaven.TestFiles.read;
+import static com.softmotions.qxmaven.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelJarWriterTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testJarContent() throws Exception {
+        File dir = tmp.newFolder("app");
+        Map<String, String> expected = new HashMap<>();
+        ParallelJarWriter writer = new ParallelJarWriter(new File(tmp.getRoot(), "app.jar"))
+                .setThreads(4)
+                .addBytes("first".getBytes(StandardCharsets.UTF_8), "META-INF/qooxdoo/fingerprints.json")
+                .addBytes("second".getBytes(StandardCharsets.UTF_8), "META-INF/qooxdoo/fingerprints.json");
+        for (int i = 0; i < 50; ++i) {
+            String rel = "script/part" + i + ".js";
+            write(new File(dir, rel), "qx.Part" + i + " = {};");
+            expected.put("web/" + rel, "qx.Part" + i + " = {};");
+            writer.addFile(new File(dir, rel), "web/" + rel);
+        }
+        write(new File(dir, "resource/logo.png"), "png");
+        expected.put("web/resource/logo.png", "png");
+        write(new File(dir, "resource/.svn"), "excluded");
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Qooxdoo-App-Version", "1.0");
+        File jar = new File(tmp.getRoot(), "app.jar");
+        writer.setManifest(manifest)
+                .addDirectory(dir, "web/", new String[]{"**/*"}, new String[0]);
+        writer.write();
+        expected.put("META-INF/qooxdoo/fingerprints.json", "first");
+        assertEquals(1, writer.getStoredEntries());
+        assertFalse(new File(jar.getPath() + ".tmp").exists());
+
+        try (JarInputStream jis = new JarInputStream(new FileInputStream(jar))) {
+            assertNotNull(jis.getManifest());
+            assertEquals("1.0", jis.getManifest().getMainAttributes().getValue("Qooxdoo-App-Version"));
+            Map<String, String> actual = new HashMap<>();
+            JarEntry je;
+            while ((je = jis.getNextJarEntry()) != null) {
+                if (!je.isDirectory()) {
+                    actual.put(je.getName(), read(jis));
+                }
+            }
+            assertEquals(expected, actual);
+        }
+
+        try (ZipFile zf = new ZipFile(jar)) {
+            List<String> names = new ArrayList<>();
+            Enumeration<? extends ZipEntry> en = zf.entries();
+            while (en.hasMoreElements()) {
+                names.add(en.nextElement().getName());
+            }
+            assertEquals("META-INF/", names.get(0));
+            assertEquals(JarFile.MANIFEST_NAME, names.get(1));
+            assertTrue(names.indexOf("web/script/") < names.indexOf("web/script/part0.js"));
+            // Entries are written in the order they are added
+            List<String> files = new ArrayList<>();
+            for (String name : names) {
+                if (name.startsWith("web/script/part")) {
+                    files.add(name);
+                }
+            }
+            for (int i = 0; i < files.size(); ++i) {
+                assertEquals("web/script/part" + i + ".js", files.get(i));
+            }
+            assertEquals(ZipEntry.STORED, zf.getEntry("web/resource/logo.png").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zf.getEntry("web/script/part0.js").getMethod());
+        }
+    }
+
+    @Test
+    public void testFailedWrite() throws Exception {
+        File jar = new File(tmp.getRoot(), "app.jar");
+        write(jar, "previous");
+        ParallelJarWriter writer = new ParallelJarWriter(jar)
+                .addBytes("a".getBytes(StandardCharsets.UTF_8), "a.js")
+                .addFile(new File(tmp.getRoot(), "missing.js"), "missing.js");
+        try {
+            writer.write();
+            fail();
+        } catch (IOException ignored) {
+        }
+        assertFalse(new File(jar.getPath() + ".tmp").exists());
+        assertEquals("previous", read(jar));
+    }
+
+    @Test
+    public void testStoredWithoutCompression() throws Exception {
+        File jar = new File(tmp.getRoot(), "app.jar");
+        ParallelJarWriter writer = new ParallelJarWriter(jar)
+                .setCompress(false)
+                .addBytes("a".getBytes(StandardCharsets.UTF_8), "a.js")
+                .addBytes("b".getBytes(StandardCharsets.UTF_8), "b/b.js");
+        writer.write();
+        assertEquals(2, writer.getStoredEntries());
+        try (ZipFile zf = new ZipFile(jar)) {
+            assertEquals(ZipEntry.STORED, zf.getEntry("a.js").getMethod());
+            assertEquals("b", read(zf.getInputStream(zf.getEntry("b/b.js"))));
+            assertTrue(zf.getEntry("META-INF/") != null);
+        }
+    }
+}
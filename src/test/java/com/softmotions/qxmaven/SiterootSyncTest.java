@@ -0,0 +1,128 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.softmotions.qxmaven.TestFiles.read;
+import static com.softmotions.qxmaven.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SiterootSyncTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File source;
+
+    private File target;
+
+    private File stateFile;
+
+    @Before
+    public void setUp() throws Exception {
+        source = tmp.newFolder("source");
+        target = tmp.newFolder("target");
+        stateFile = new File(tmp.getRoot(), "sync.json");
+        write(new File(source, "index.html"), "index ${v}");
+        write(new File(source, "css/app.css"), "css");
+        write(new File(source, "img/logo.png"), "png");
+        write(new File(target, "script/app.js"), "compiled");
+    }
+
+    @Test
+    public void testInitialAndUpToDate() throws Exception {
+        SiterootSync sync = sync("f1");
+        assertEquals(Arrays.asList("css/app.css", "img/logo.png"), sync.getToCopy());
+        assertEquals(Collections.singletonList("index.html"), sync.getToFilter());
+        assertEquals("css", read(new File(target, "css/app.css")));
+
+        assertTrue(sync("f1").isUpToDate());
+
+        // The hash of a copied file is not known until it is touched once
+        File css = new File(source, "css/app.css");
+        css.setLastModified(css.lastModified() + 10000);
+        assertEquals(Collections.singletonList("css/app.css"), sync("f1").getToCopy());
+        css.setLastModified(css.lastModified() + 10000);
+        sync = sync("f1");
+        assertTrue(sync.isUpToDate());
+        assertTrue(sync.isStateModified());
+        assertEquals(3, sync.getUnchanged());
+    }
+
+    @Test
+    public void testChangedAndModifiedTarget() throws Exception {
+        sync("f1");
+        write(new File(source, "css/app.css"), "changed css");
+        write(new File(target, "img/logo.png"), "broken");
+        SiterootSync sync = sync("f1");
+        assertEquals(Arrays.asList("css/app.css", "img/logo.png"), sync.getToCopy());
+        assertTrue(sync.getToFilter().isEmpty());
+        assertEquals("changed css", read(new File(target, "css/app.css")));
+        assertEquals("png", read(new File(target, "img/logo.png")));
+    }
+
+    @Test
+    public void testFilterHashChange() throws Exception {
+        sync("f1");
+        SiterootSync sync = sync("f2");
+        assertTrue(sync.getToCopy().isEmpty());
+        assertEquals(Collections.singletonList("index.html"), sync.getToFilter());
+        assertTrue(sync("f2").isUpToDate());
+    }
+
+    @Test
+    public void testOrphans() throws Exception {
+        sync("f1");
+        Files.delete(new File(source, "img/logo.png").toPath());
+        SiterootSync sync = sync("f1");
+        assertEquals(Collections.singletonList("img/logo.png"), sync.getOrphans());
+        assertFalse(new File(target, "img/logo.png").exists());
+        assertFalse(new File(target, "img").exists());
+        // Files not created by the synchronization are kept
+        assertEquals("compiled", read(new File(target, "script/app.js")));
+        assertTrue(sync("f1").isUpToDate());
+    }
+
+    @Test
+    public void testRecordedTargets() throws Exception {
+        sync("f1");
+        File index = new File(target, "index.html");
+        write(index, "index rewritten");
+        assertTrue(SiterootSync.recordTargets(stateFile, target, Arrays.asList("index.html", "script/app.js")));
+        assertFalse(SiterootSync.recordTargets(stateFile, target, Collections.singletonList("index.html")));
+        assertTrue(sync("f1").isUpToDate());
+        assertEquals("index rewritten", read(index));
+        write(new File(source, "index.html"), "index changed ${v}");
+        assertEquals(Collections.singletonList("index.html"), sync("f1").getToFilter());
+    }
+
+    /**
+     * Synchronize, the filtered files are copied as is
+     */
+    private SiterootSync sync(String filterHash) throws IOException {
+        SiterootSync sync = new SiterootSync(source, target, stateFile)
+                .setFilteredIncludes("**/*.html")
+                .setFilterHash(filterHash);
+        sync.scan();
+        sync.copy(new FileCopier(), 2);
+        for (String rel : sync.getToFilter()) {
+            Files.copy(new File(source, rel).toPath(), new File(target, rel).toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+            sync.updated(rel);
+        }
+        sync.deleteOrphans();
+        sync.save();
+        return sync;
+    }
+}
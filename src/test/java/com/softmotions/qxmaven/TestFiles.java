@@ -0,0 +1,39 @@
+package com.softmotions.qxmaven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * File helpers of the tests.
+ */
+final class TestFiles {
+
+    private TestFiles() {
+    }
+
+    /**
+     * Write the UTF-8 text creating the parent directories
+     */
+    static void write(File f, String data) throws IOException {
+        Files.createDirectories(f.getParentFile().toPath());
+        Files.write(f.toPath(), data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String read(File f) throws IOException {
+        return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+    }
+
+    static String read(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = is.read(buf)) != -1) {
+            bos.write(buf, 0, n);
+        }
+        return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
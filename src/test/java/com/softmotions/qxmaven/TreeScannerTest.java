@@ -0,0 +1,47 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.softmotions.qxmaven.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+
+public class TreeScannerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testSymlinks() throws Exception {
+        File root = tmp.newFolder("root");
+        write(new File(root, "res/a.txt"), "a");
+        Files.createSymbolicLink(new File(root, "link").toPath(), new File(root, "res").toPath());
+        // Cycle back to the root
+        Files.createSymbolicLink(new File(root, "res/up").toPath(), root.toPath());
+
+        final Path base = root.toPath();
+        final Set<String> files = Collections.synchronizedSet(new TreeSet<String>());
+        TreeScanner.scan(Collections.singletonList(root), new TreeScanner.Visitor() {
+            @Override
+            public boolean visit(Path path, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile()) {
+                    files.add(base.relativize(path).toString().replace(File.separatorChar, '/'));
+                }
+                return false;
+            }
+        });
+        // The directory reachable by two paths is scanned under both of them
+        assertEquals(new TreeSet<>(Arrays.asList("link/a.txt", "res/a.txt")), files);
+    }
+}
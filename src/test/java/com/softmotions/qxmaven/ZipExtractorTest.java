@@ -0,0 +1,102 @@
+package com.softmotions.qxmaven;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.softmotions.qxmaven.TestFiles.read;
+import static com.softmotions.qxmaven.TestFiles.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ZipExtractorTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testDifferentialExtract() throws Exception {
+        File dest = tmp.newFolder("dest");
+        File index = new File(tmp.getRoot(), "dest.index");
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("a/keep.txt", "keep");
+        entries.put("a/change.txt", "old");
+        entries.put("b/remove.txt", "remove");
+        ZipExtractor ze = new ZipExtractor(zip("v1.zip", entries), dest).setIndex(index);
+        ze.extract();
+        assertEquals(3, ze.getFiles());
+        assertEquals("old", read(new File(dest, "a/change.txt")));
+
+        File keep = new File(dest, "a/keep.txt");
+        long keepMtime = keep.lastModified();
+        entries.put("a/change.txt", "new content");
+        entries.remove("b/remove.txt");
+        entries.put("c/add.txt", "add");
+        ze = new ZipExtractor(zip("v2.zip", entries), dest).setIndex(index);
+        ze.extract();
+        assertEquals(2, ze.getFiles());
+        assertEquals(1, ze.getSkipped());
+        assertEquals(1, ze.getDeleted());
+        assertTrue(ze.isChanged());
+        assertEquals("new content", read(new File(dest, "a/change.txt")));
+        assertEquals("add", read(new File(dest, "c/add.txt")));
+        assertFalse(new File(dest, "b/remove.txt").exists());
+        assertEquals(keepMtime, keep.lastModified());
+
+        ze = new ZipExtractor(zip("v3.zip", entries), dest).setIndex(index);
+        ze.extract();
+        assertFalse(ze.isChanged());
+        assertEquals(3, ze.getSkipped());
+    }
+
+    @Test
+    public void testDifferentialExtractWithoutIndex() throws Exception {
+        File dest = tmp.newFolder("dest");
+        write(new File(dest, "orphan.txt"), "orphan");
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("a.txt", "a");
+        ZipExtractor ze = new ZipExtractor(zip("v1.zip", entries), dest)
+                .setIndex(new File(tmp.getRoot(), "dest.index"));
+        ze.extract();
+        assertEquals(1, ze.getDeleted());
+        assertFalse(new File(dest, "orphan.txt").exists());
+        assertEquals("a", read(new File(dest, "a.txt")));
+    }
+
+    @Test
+    public void testHardLinkedFileIsNotOverwritten() throws Exception {
+        File store = tmp.newFolder("store");
+        File dest = tmp.newFolder("dest");
+        File shared = new File(store, "a.txt");
+        write(shared, "shared");
+        Files.createLink(new File(dest, "a.txt").toPath(), shared.toPath());
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("a.txt", "changed");
+        new ZipExtractor(zip("v1.zip", entries), dest).setIndex(new File(tmp.getRoot(), "dest.index")).extract();
+        assertEquals("changed", read(new File(dest, "a.txt")));
+        assertEquals("shared", read(shared));
+    }
+
+    private File zip(String name, Map<String, String> entries) throws IOException {
+        File f = new File(tmp.getRoot(), name);
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(f))) {
+            for (Map.Entry<String, String> e : entries.entrySet()) {
+                zos.putNextEntry(new ZipEntry(e.getKey()));
+                zos.write(e.getValue().getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+        return f;
+    }
+}